@@ -0,0 +1,103 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Synthetic data shared by our benchmarks.
+ *
+ * <p>Keys are shaped like <code>section1.group23.key4</code>, with one
+ * thousand keys per section and ten keys per group, and every third value
+ * is a number.</p>
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+        throw new IllegalStateException("Do not construct");
+    }
+
+    /* ====================================================================== */
+
+    static String key(int index) {
+        return "section" + (index / 1000) + ".group" + (index / 10 % 100) + ".key" + (index % 10);
+    }
+
+    static String value(int index) {
+        return index % 3 == 0 ? Integer.toString(index) : "value number " + index;
+    }
+
+    /* ====================================================================== */
+
+    /**
+     * Return a {@link Map} with the specified number of mappings.
+     */
+    static Map<String, String> map(int size) {
+        final Map<String, String> map = new LinkedHashMap<>();
+        for (int x = 0; x < size; x ++) map.put(key(x), value(x));
+        return map;
+    }
+
+    /**
+     * Return a {@link Configurations} with the specified number of mappings.
+     */
+    static Configurations configurations(int size) {
+        return new MappedConfigurations(map(size)) {};
+    }
+
+    /**
+     * Return the UTF-8 bytes of a <em>properties</em> file with the specified
+     * number of mappings.
+     */
+    static byte[] properties(int size) {
+        final StringBuilder builder = new StringBuilder("# Generated properties\n");
+        for (int x = 0; x < size; x ++) {
+            builder.append(key(x)).append(" = ").append(value(x)).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return the UTF-8 bytes of a <em>JSON</em> file with the specified number
+     * of mappings, nested by section and group.
+     */
+    static byte[] json(int size) {
+        final StringBuilder builder = new StringBuilder("{\n");
+        for (int x = 0; x < size; x ++) {
+            final boolean section = x % 1000 == 0;
+            final boolean group = x % 10 == 0;
+
+            /* Close the previous group and section, open new ones */
+            if (group && (x > 0)) {
+                builder.append(" }");
+                if (section) builder.append("\n  }");
+                builder.append(",\n");
+            }
+            if (section) builder.append("  \"section").append(x / 1000).append("\": {\n");
+            if (group) builder.append("    \"group").append(x / 10 % 100).append("\": {");
+            else builder.append(",");
+
+            /* Our key and (quoted or numeric) value */
+            builder.append(" \"key").append(x % 10).append("\": ");
+            if (x % 3 == 0) builder.append(x);
+            else builder.append('"').append(value(x)).append('"');
+        }
+        if (size > 0) builder.append(" }\n  }\n");
+        return builder.append("}\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.lang.StackWalker.Option;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare how {@link DefaultConfigurations} and {@link ResourceConfigurations}
+ * find their caller (with a {@link StackWalker}) with the stack trace based
+ * approach they used before, when called from a <em>deep</em> stack.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallerBenchmark {
+
+    private static final StackWalker WALKER = StackWalker.getInstance(Option.RETAIN_CLASS_REFERENCE);
+
+    @Param({ "10", "100", "1000" })
+    public int depth;
+
+    @Benchmark
+    public Class<?> stackTrace()
+    throws ClassNotFoundException {
+        return recurse(depth, true);
+    }
+
+    @Benchmark
+    public Class<?> stackWalker()
+    throws ClassNotFoundException {
+        return recurse(depth, false);
+    }
+
+    /* ====================================================================== */
+
+    private static Class<?> recurse(int depth, boolean stackTrace)
+    throws ClassNotFoundException {
+        if (depth > 0) return recurse(depth - 1, stackTrace);
+        return stackTrace ? new Caller().stackTrace() : new Caller().stackWalker();
+    }
+
+    /* Mimic the frames of our constructors calling "load()" */
+    private static final class Caller {
+
+        private Class<?> stackTrace()
+        throws ClassNotFoundException {
+            return loadStackTrace();
+        }
+
+        private Class<?> stackWalker() {
+            return loadStackWalker();
+        }
+
+        private static Class<?> loadStackTrace()
+        throws ClassNotFoundException {
+            final String className = new Throwable().getStackTrace()[2].getClassName();
+            return Class.forName(className);
+        }
+
+        private static Class<?> loadStackWalker() {
+            return WALKER.walk((frames) -> frames.skip(2).findFirst()).get().getDeclaringClass();
+        }
+    }
+}
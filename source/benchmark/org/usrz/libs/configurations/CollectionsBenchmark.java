@@ -0,0 +1,101 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measure the cost of the {@link java.util.Map Map} collection views and
+ * of the {@link Object} methods, both on {@link MappedConfigurations} and
+ * on {@link DelegateConfigurations}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionsBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int size;
+
+    private Configurations configurations;
+    private Configurations delegate;
+    private Configurations other;
+    private Configurations different;
+
+    @Setup
+    public void setup() {
+        configurations = BenchmarkData.configurations(size);
+        delegate = new DelegateConfigurations(BenchmarkData.configurations(size));
+        other = BenchmarkData.configurations(size);
+
+        /* Same keys, only the last value differs */
+        final Map<String, String> map = BenchmarkData.map(size);
+        map.put(BenchmarkData.key(size - 1), "different");
+        different = new MappedConfigurations(map) {};
+    }
+
+    @Benchmark
+    public void keySet(Blackhole blackhole) {
+        for (String key: configurations.keySet()) blackhole.consume(key);
+    }
+
+    @Benchmark
+    public void values(Blackhole blackhole) {
+        for (String value: configurations.values()) blackhole.consume(value);
+    }
+
+    @Benchmark
+    public void delegateKeySet(Blackhole blackhole) {
+        for (String key: delegate.keySet()) blackhole.consume(key);
+    }
+
+    @Benchmark
+    public boolean delegateContainsValue() {
+        return delegate.containsValue("not there");
+    }
+
+    @Benchmark
+    public int hashCodes() {
+        return configurations.hashCode();
+    }
+
+    @Benchmark
+    public boolean equality() {
+        return configurations.equals(other);
+    }
+
+    @Benchmark
+    public boolean inequality() {
+        return configurations.equals(different);
+    }
+}
@@ -0,0 +1,80 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the cost of finding what changed between two {@link Configurations},
+ * with a sorted merge or by looking up every key of each in the other (as
+ * reloading configurations used to do).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiffBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    private Configurations previous;
+    private Configurations current;
+
+    @Setup
+    public void setup() {
+        /* One value in a hundred changes */
+        final Map<String, String> map = BenchmarkData.map(size);
+        previous = BenchmarkData.configurations(size);
+        for (int x = 0; x < size; x += 100) map.put(BenchmarkData.key(x), "changed");
+        current = new MappedConfigurations(map) {};
+    }
+
+    @Benchmark
+    public ConfigurationsDiff diff() {
+        return previous.diff(current);
+    }
+
+    @Benchmark
+    public Set<String> lookups() {
+        final Set<String> changed = new HashSet<>();
+        for (Entry<String, String> entry: previous.entrySet()) {
+            if (!entry.getValue().equals(current.get(entry.getKey()))) changed.add(entry.getKey());
+        }
+        for (String key: current.keySet()) {
+            if (!previous.containsKey(key)) changed.add(key);
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,72 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare our {@link DurationParser} with the regular-expressions based
+ * conversion it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DurationBenchmark {
+
+    @Param({ "2 days 3 hours 3 minutes 5.22 seconds", "2d3h3m5.22s", "P2DT3H3M5.22S", "59s" })
+    public String duration;
+
+    @Benchmark
+    public Duration parser() {
+        return DurationParser.parse(duration);
+    }
+
+    @Benchmark
+    public Duration regex() {
+        return regex(duration);
+    }
+
+    /* ====================================================================== */
+
+    /* The original, regular-expressions based conversion */
+    private static Duration regex(String what) {
+        final String converted = what.toUpperCase()
+                                     .replaceAll("\\s", "")
+                                     .replaceAll("^(P)?", "P")
+                                     .replaceAll("MIN(UTE)?(S)?", "M")
+                                     .replaceAll("H(OU)?R(S)?", "H")
+                                     .replaceAll("SEC(OND)?(S)?", "S")
+                                     .replaceAll("D(AY(S)?)?(T)?", "DT")
+                                     .replaceAll("^P([^T]+)$", "PT$1")
+                                     .replaceAll("^P([^T]+)T$", "P$1T0M");
+        return Duration.parse(converted);
+    }
+}
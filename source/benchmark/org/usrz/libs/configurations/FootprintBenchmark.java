@@ -0,0 +1,116 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Measure the <em>retained</em> heap footprint of {@link MappedConfigurations}
+ * against the <code>HashMap</code> it used to be backed by.
+ *
+ * <p>Footprints (as measured by <em>JOL</em>) are reported by the
+ * <code>bytes</code> and <code>bytesPerEntry</code> secondary results, and
+ * include the keys and values {@link String}s. Values are freshly allocated
+ * for each mapping, as a parser would do, and are either <em>unique</em> or
+ * <em>repeated</em> (only ten distinct ones, like flags).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(1)
+public class FootprintBenchmark {
+
+    @Param({ "10000", "100000", "1000000" })
+    public int size;
+
+    @Param({ "unique", "repeated" })
+    public String values;
+
+    private Map<String, String> map;
+
+    @Setup
+    public void setup() {
+        map = new LinkedHashMap<>();
+        for (int x = 0; x < size; x ++) {
+            final String value = values.equals("unique") ? BenchmarkData.value(x) : Integer.toString(x % 10);
+            map.put(BenchmarkData.key(x), value);
+        }
+    }
+
+    /* ====================================================================== */
+
+    /* Not anonymous, as we don't want to measure this benchmark as well */
+    private static final class Mapped extends MappedConfigurations {
+        private Mapped(Map<?, ?> map) {
+            super(map);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+
+        public long bytes;
+        public long bytesPerEntry;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = bytesPerEntry = 0;
+        }
+
+        private void measure(Object object, int size) {
+            bytes = GraphLayout.parseInstance(object).totalSize();
+            bytesPerEntry = bytes / size;
+        }
+    }
+
+    /* ====================================================================== */
+
+    @Benchmark
+    public Object mapped(Footprint footprint) {
+        final Configurations configurations = new Mapped(map);
+        footprint.measure(configurations, size);
+        return configurations;
+    }
+
+    @Benchmark
+    public Object hashMap(Footprint footprint) {
+        final Map<String, String> configurations = Collections.unmodifiableMap(new HashMap<>(map));
+        footprint.measure(configurations, size);
+        return configurations;
+    }
+}
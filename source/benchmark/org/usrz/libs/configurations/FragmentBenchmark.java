@@ -0,0 +1,90 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measure the per-file cost of parsing a number of small <em>JSON</em>
+ * fragments, as loaded at boot, where the fixed cost of each parser
+ * (rather than the size of the documents) dominates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FragmentBenchmark {
+
+    /* The number of fragments parsed per invocation */
+    private static final int FRAGMENTS = 300;
+
+    @Param({ "10" })
+    public int size;
+
+    private byte[][] fragments;
+
+    @Setup
+    public void setup() {
+        fragments = new byte[FRAGMENTS][];
+        for (int x = 0; x < FRAGMENTS; x ++) fragments[x] = BenchmarkData.json(size);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAGMENTS)
+    public void stream(Blackhole blackhole)
+    throws IOException {
+        for (byte[] fragment: fragments) {
+            blackhole.consume(new JsonConfigurations(new ByteArrayInputStream(fragment)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAGMENTS)
+    public void buffer(Blackhole blackhole) {
+        for (byte[] fragment: fragments) {
+            blackhole.consume(new JsonConfigurations(ByteBuffer.wrap(fragment)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAGMENTS)
+    public void channel(Blackhole blackhole)
+    throws IOException {
+        for (byte[] fragment: fragments) {
+            blackhole.consume(new JsonConfigurations(Channels.newChannel(new ByteArrayInputStream(fragment))));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compare our hand-rolled key validation with the regular expression it
+ * replaced, both on its own and when constructing {@link MappedConfigurations}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyValidationBenchmark {
+
+    /* The original pattern for validating configuration keys */
+    private static final Pattern NAME_PATTERN = Pattern.compile("^([\\w\\$-]+(\\.[\\w\\$-]+)*)?$");
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    private String[] keys;
+    private Map<String, String> map;
+
+    @Setup
+    public void setup() {
+        map = BenchmarkData.map(size);
+        keys = map.keySet().toArray(new String[size]);
+    }
+
+    /* ====================================================================== */
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+        for (String key: keys) blackhole.consume(NAME_PATTERN.matcher(key.trim()).matches());
+    }
+
+    @Benchmark
+    public void validator(Blackhole blackhole) {
+        for (String key: keys) blackhole.consume(MappedConfigurations.isValidKey(key.trim()));
+    }
+
+    @Benchmark
+    public Configurations constructionRegex() {
+        /* Normalize as MappedConfigurations used to, then let it adopt the result */
+        final Map<String, String> normalized = new HashMap<>();
+        for (Map.Entry<String, String> entry: map.entrySet()) {
+            final String key = entry.getKey().trim();
+            if (!NAME_PATTERN.matcher(key).matches()) throw new IllegalStateException("Invalid key " + key);
+            normalized.put(key, entry.getValue().trim());
+        }
+        return new MappedConfigurations(normalized, true) {};
+    }
+
+    @Benchmark
+    public Configurations constructionValidator() {
+        return new MappedConfigurations(map) {};
+    }
+}
@@ -0,0 +1,97 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the cost of looking up (and converting) single values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    private Configurations configurations;
+    private String stringKey;
+    private String numberKey;
+
+    @Setup
+    public void setup() {
+        final Map<String, String> map = BenchmarkData.map(10000);
+        map.put("test.boolean", "true");
+        map.put("test.duration", "2 hours 30 minutes");
+        configurations = new MappedConfigurations(map) {};
+        stringKey = BenchmarkData.key(1234);
+        numberKey = BenchmarkData.key(1233);
+    }
+
+    @Benchmark
+    public String getString() {
+        return configurations.getString(stringKey);
+    }
+
+    @Benchmark
+    public String getMissing() {
+        return configurations.getString("test.missing", "default");
+    }
+
+    @Benchmark
+    public int getInt() {
+        return configurations.get(numberKey, 0);
+    }
+
+    @Benchmark
+    public long getLong() {
+        return configurations.get(numberKey, 0L);
+    }
+
+    @Benchmark
+    public boolean getBooleanPrimitive() {
+        return configurations.get("test.boolean", false);
+    }
+
+    @Benchmark
+    public Integer getInteger() {
+        return configurations.getInteger(numberKey);
+    }
+
+    @Benchmark
+    public Boolean getBoolean() {
+        return configurations.getBoolean("test.boolean");
+    }
+
+    @Benchmark
+    public Duration getDuration() {
+        return configurations.getDuration("test.duration");
+    }
+}
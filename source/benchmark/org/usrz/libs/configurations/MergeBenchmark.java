@@ -0,0 +1,85 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the cost of merging and overriding {@link Configurations}, and of
+ * looking up values in the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int size;
+
+    private Configurations configurations;
+    private Configurations overrides;
+    private Configurations[] layers;
+    private String key;
+
+    @Setup
+    public void setup() {
+        configurations = BenchmarkData.configurations(size);
+        overrides = BenchmarkData.configurations(size / 10).prefix("overrides");
+        key = BenchmarkData.key(size / 2);
+
+        /* Ten layers, like many "defaults.properties" would be */
+        layers = new Configurations[10];
+        for (int x = 0; x < layers.length; x ++) layers[x] = BenchmarkData.configurations(size / 10).prefix("layer" + x);
+    }
+
+    @Benchmark
+    public Configurations merge() {
+        return configurations.merge(overrides);
+    }
+
+    @Benchmark
+    public Configurations override() {
+        return configurations.override(overrides);
+    }
+
+    @Benchmark
+    public String mergeAndGet() {
+        return configurations.merge(overrides).get(key);
+    }
+
+    @Benchmark
+    public int mergeLayersAndIterate() {
+        /* As DefaultConfigurations used to do, one merge per layer */
+        Configurations merged = Configurations.EMPTY_CONFIGURATIONS;
+        for (Configurations layer: layers) merged = merged.merge(layer);
+        return merged.entrySet().size();
+    }
+}
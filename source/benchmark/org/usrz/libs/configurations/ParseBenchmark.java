@@ -0,0 +1,124 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the cost of parsing <em>JSON</em> and <em>properties</em> files,
+ * from streams, buffers and channels, and of opening (and reading one key
+ * from) a binary snapshot instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int size;
+
+    private byte[] json;
+    private byte[] properties;
+    private File file;
+    private File snapshot;
+
+    @Setup
+    public void setup()
+    throws IOException {
+        json = BenchmarkData.json(size);
+        properties = BenchmarkData.properties(size);
+        file = File.createTempFile("benchmark-", ".properties");
+        Files.write(file.toPath(), properties);
+        snapshot = File.createTempFile("benchmark-", ".snapshot");
+        SnapshotConfigurations.write(new PropertiesConfigurations(file), snapshot);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        snapshot.delete();
+    }
+
+    @Benchmark
+    public Configurations json()
+    throws IOException {
+        return new JsonConfigurations(new ByteArrayInputStream(json));
+    }
+
+    @Benchmark
+    public Configurations jsonBuffer()
+    throws IOException {
+        return new JsonConfigurations(ByteBuffer.wrap(json));
+    }
+
+    @Benchmark
+    public Configurations jsonChannel()
+    throws IOException {
+        return new JsonConfigurations(Channels.newChannel(new ByteArrayInputStream(json)));
+    }
+
+    @Benchmark
+    public Configurations properties()
+    throws IOException {
+        return new PropertiesConfigurations(new ByteArrayInputStream(properties));
+    }
+
+    @Benchmark
+    public Configurations propertiesBuffer()
+    throws IOException {
+        return new PropertiesConfigurations(ByteBuffer.wrap(properties));
+    }
+
+    @Benchmark
+    public Configurations propertiesChannel()
+    throws IOException {
+        return new PropertiesConfigurations(Channels.newChannel(new ByteArrayInputStream(properties)));
+    }
+
+    @Benchmark
+    public Configurations propertiesMapped()
+    throws IOException {
+        return new PropertiesConfigurations(file);
+    }
+
+    @Benchmark
+    public String snapshotMapped()
+    throws IOException {
+        return new SnapshotConfigurations(snapshot).get(BenchmarkData.key(size / 2));
+    }
+}
@@ -0,0 +1,75 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measure the cost of extracting, stripping and grouping by prefix,
+ * including a walk over the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrefixBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int size;
+
+    private Configurations configurations;
+
+    @Setup
+    public void setup() {
+        configurations = BenchmarkData.configurations(size);
+    }
+
+    @Benchmark
+    public void extract(Blackhole blackhole) {
+        final Configurations extracted = configurations.extract("section0.group1");
+        blackhole.consume(extracted.size());
+        blackhole.consume(extracted.get("section0.group1.key1"));
+    }
+
+    @Benchmark
+    public void strip(Blackhole blackhole) {
+        final Configurations stripped = configurations.strip("section0.group1");
+        blackhole.consume(stripped.size());
+        blackhole.consume(stripped.get("key1"));
+    }
+
+    @Benchmark
+    public void group(Blackhole blackhole) {
+        final Map<String, Configurations> groups = configurations.group("section0");
+        for (Configurations group: groups.values()) blackhole.consume(group.size());
+    }
+}
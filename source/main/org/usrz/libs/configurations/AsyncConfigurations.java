@@ -0,0 +1,266 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.usrz.libs.logging.Log;
+
+/**
+ * Factories for {@link Configurations} loaded <em>asynchronously</em>,
+ * returned as {@link CompletableFuture}s.
+ *
+ * <p>No method of this class blocks the caller's thread: files are read
+ * with an {@link AsynchronousFileChannel}, <em>HTTP</em> and
+ * <em>HTTPS</em> URLs are fetched with {@link HttpClient#sendAsync(
+ * HttpRequest, HttpResponse.BodyHandler) HttpClient}, and everything else
+ * (including parsing) happens in the {@linkplain ForkJoinPool#commonPool()
+ * common pool}. Failures complete the returned futures exceptionally, with
+ * a {@link ConfigurationsException}.</p>
+ *
+ * <p>Futures can be {@linkplain #merge(CompletableFuture...) merged}, so
+ * that many sources are loaded concurrently, and layered on top of each
+ * other (as {@link Configurations#merge(java.util.Map)} would do) once all
+ * of them are available.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+public final class AsyncConfigurations {
+
+    /* Our log */
+    private static final Log log = new Log();
+
+    private AsyncConfigurations() {
+        throw new IllegalStateException("Do not construct");
+    }
+
+    /* ====================================================================== */
+    /* FILES                                                                  */
+    /* ====================================================================== */
+
+    /**
+     * Asynchronously load {@link Configurations} from a {@link File}, as
+     * {@link FileConfigurations} would.
+     */
+    public static CompletableFuture<Configurations> file(File file) {
+        if (file == null) throw new NullPointerException("Null file");
+
+        final CompletableFuture<Configurations> future = new CompletableFuture<>();
+        final String name = file.getAbsolutePath();
+        try {
+            log.debug("Reading configurations from file %s", file);
+            final AsynchronousFileChannel channel = AsynchronousFileChannel.open(file.toPath(), StandardOpenOption.READ);
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new ConfigurationsException("File " + file + " too big to be read (" + size + " bytes)");
+            }
+
+            /* Read the whole file, then parse it in the common pool */
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            channel.read(buffer, 0, buffer, new CompletionHandler<Integer, ByteBuffer>() {
+
+                @Override
+                public void completed(Integer read, ByteBuffer buffer) {
+                    if ((read >= 0) && buffer.hasRemaining()) {
+                        channel.read(buffer, buffer.position(), buffer, this);
+                        return;
+                    }
+
+                    close();
+                    CompletableFuture.runAsync(() -> {
+                        try {
+                            final byte[] bytes = buffer.array();
+                            final int length = buffer.position();
+                            future.complete(FileConfigurations.parse(name, length == bytes.length ? bytes : Arrays.copyOf(bytes, length)));
+                        } catch (Throwable throwable) {
+                            future.completeExceptionally(exception("Error reading file " + file, throwable));
+                        }
+                    }, ForkJoinPool.commonPool());
+                }
+
+                @Override
+                public void failed(Throwable throwable, ByteBuffer buffer) {
+                    close();
+                    future.completeExceptionally(exception("I/O error reading file " + file, throwable));
+                }
+
+                private void close() {
+                    try {
+                        channel.close();
+                    } catch (IOException exception) {
+                        log.debug("I/O error closing file %s", file);
+                    }
+                }
+            });
+        } catch (Throwable throwable) {
+            future.completeExceptionally(exception("I/O error reading file " + file, throwable));
+        }
+        return future;
+    }
+
+    /* ====================================================================== */
+    /* URLS AND RESOURCES                                                     */
+    /* ====================================================================== */
+
+    /**
+     * Asynchronously load {@link Configurations} from a {@link URL}, as
+     * {@link URLConfigurations} would.
+     */
+    public static CompletableFuture<Configurations> url(URL url) {
+        if (url == null) throw new NullPointerException("Null URL");
+
+        final String protocol = url.getProtocol();
+        try {
+            if ("file".equalsIgnoreCase(protocol)) {
+                return file(new File(url.toURI()));
+            } else if (!("http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol))) {
+                return CompletableFuture.supplyAsync(() -> new URLConfigurations(url), ForkJoinPool.commonPool());
+            }
+
+            log.debug("Fetching configurations from URL %s", url);
+            final HttpRequest request = HttpRequest.newBuilder(url.toURI())
+                                                   .timeout(Duration.ofMillis(CachingURLConfigurations.TIMEOUT))
+                                                   .GET()
+                                                   .build();
+            return Client.CLIENT.sendAsync(request, BodyHandlers.ofByteArray()).thenApplyAsync((response) -> {
+                if (response.statusCode() != 200) throw new ConfigurationsException("Error loading URL " + url + ": status " + response.statusCode());
+                try {
+                    return URLConfigurations.parse(url, new ByteArrayInputStream(response.body()));
+                } catch (IOException exception) {
+                    throw new ConfigurationsException("I/O error loading URL " + url, exception);
+                }
+            }, ForkJoinPool.commonPool()).handle((configurations, throwable) -> {
+                if (throwable == null) return configurations;
+                throw exception("Error loading URL " + url, throwable);
+            });
+
+        } catch (URISyntaxException | IllegalArgumentException exception) {
+            final CompletableFuture<Configurations> future = new CompletableFuture<>();
+            future.completeExceptionally(exception("Invalid URL " + url, exception));
+            return future;
+        }
+    }
+
+    /**
+     * Asynchronously load {@link Configurations} from a resource associated
+     * with the specified {@link Class}, as {@link ResourceConfigurations}
+     * would.
+     */
+    public static CompletableFuture<Configurations> resource(Class<?> clazz, String resource) {
+        if (clazz == null) throw new NullPointerException("Null class");
+        if (resource == null) throw new NullPointerException("Null resource");
+
+        final URL url = clazz.getResource(resource);
+        if (url != null) return url(url);
+
+        final CompletableFuture<Configurations> future = new CompletableFuture<>();
+        future.completeExceptionally(new ConfigurationsException("Resource \"" + resource + "\" not found for class " + clazz.getName()));
+        return future;
+    }
+
+    /**
+     * Asynchronously load the {@link DefaultConfigurations} associated with
+     * the specified {@link Class}.
+     */
+    public static CompletableFuture<Configurations> defaults(Class<?> clazz) {
+        if (clazz == null) throw new NullPointerException("Null class");
+        return CompletableFuture.supplyAsync(() -> new DefaultConfigurations(clazz), ForkJoinPool.commonPool());
+    }
+
+    /* ====================================================================== */
+    /* COMPOSITION                                                            */
+    /* ====================================================================== */
+
+    /**
+     * Return a {@link CompletableFuture} completing once all the specified
+     * ones have, with their {@link Configurations} layered on top of each
+     * other, the first one specified having the highest priority.
+     *
+     * <p>Should any of the specified futures fail, the returned one will
+     * fail as well.</p>
+     */
+    @SafeVarargs
+    public static CompletableFuture<Configurations> merge(CompletableFuture<? extends Configurations>... futures) {
+        if (futures == null) throw new NullPointerException("Null futures");
+
+        /* Copy our generic array, without passing it on as varargs */
+        final List<CompletableFuture<? extends Configurations>> list = new ArrayList<>(futures.length);
+        for (CompletableFuture<? extends Configurations> future: futures) list.add(future);
+        return merge(list);
+    }
+
+    /**
+     * Return a {@link CompletableFuture} completing once all the specified
+     * ones have, with their {@link Configurations} layered on top of each
+     * other, the first one specified having the highest priority.
+     *
+     * <p>Should any of the specified futures fail, the returned one will
+     * fail as well.</p>
+     */
+    public static CompletableFuture<Configurations> merge(List<? extends CompletableFuture<? extends Configurations>> futures) {
+        if (futures == null) throw new NullPointerException("Null futures");
+        final List<CompletableFuture<? extends Configurations>> list = new ArrayList<>(futures);
+        for (CompletableFuture<? extends Configurations> future: list) {
+            if (future == null) throw new NullPointerException("Null future");
+        }
+
+        return CompletableFuture.allOf(list.toArray(new CompletableFuture<?>[list.size()])).handle((nothing, throwable) -> {
+            if (throwable != null) throw exception("Error loading configurations", throwable);
+
+            final List<Configurations> layers = new ArrayList<>(list.size());
+            for (CompletableFuture<? extends Configurations> future: list) layers.add(future.join());
+            return new LayeredConfigurations(layers);
+        });
+    }
+
+    /* ====================================================================== */
+
+    /* Unwrap completion exceptions, and wrap anything else */
+    private static RuntimeException exception(String message, Throwable throwable) {
+        final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof ConfigurationsException) return (ConfigurationsException) cause;
+        return new ConfigurationsException(message, cause);
+    }
+
+    /* Our HTTP client, created lazily, and shared with refreshing URLs */
+    static final class Client {
+        static final HttpClient CLIENT = HttpClient.newBuilder()
+                                                  .connectTimeout(Duration.ofMillis(CachingURLConfigurations.TIMEOUT))
+                                                  .followRedirects(HttpClient.Redirect.NORMAL)
+                                                  .executor(ForkJoinPool.commonPool())
+                                                  .build();
+    }
+}
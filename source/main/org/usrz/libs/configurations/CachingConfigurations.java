@@ -0,0 +1,100 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * A {@link Configurations} implementation wrapping another one and caching
+ * the results of its <em>conversion</em> methods.
+ *
+ * <p>Each <em>key</em> will be converted at most once for each type (for
+ * example by {@link #getDuration(Object)} or {@link #get(Object, int)}), and
+ * subsequent calls will return the cached value.</p>
+ *
+ * <p>Converted values are cached for the current
+ * {@linkplain Configurations#snapshot() snapshot} of the wrapped
+ * {@link Configurations}: when wrapping {@link ReloadableConfigurations},
+ * the cache is discarded as soon as new mappings are published, and values
+ * are converted again from those.</p>
+ *
+ * <p>As snapshots are immutable, and all the converted types
+ * ({@link Duration}, {@link java.net.URL URL}, {@link Integer}, ...) are
+ * immutable as well, instances of this class can be safely shared amongst
+ * multiple threads.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+public class CachingConfigurations extends DelegateConfigurations {
+
+    /* The configurations we wrap, and our cache for its current snapshot */
+    private final Configurations configurations;
+    private volatile Cache cache;
+
+    /**
+     * Create a new {@link CachingConfigurations} instance caching the
+     * converted values of the specified {@link Configurations}.
+     */
+    public CachingConfigurations(Configurations configurations) {
+        super(configurations);
+        this.configurations = configurations;
+        cache = new Cache(configurations.snapshot());
+    }
+
+    /* ====================================================================== */
+
+    @Override
+    <T> T convert(Object key, Class<T> type, BiFunction<Object, String, T> converter) {
+        /* Normalize the key, let our parent deal with anything weird */
+        final String string;
+        if (key == null) string = "";
+        else if (key instanceof String) string = (String) key;
+        else return super.convert(key, type, converter);
+
+        /* Start over if our delegate was reloaded (benign race) */
+        final Configurations snapshot = configurations.snapshot();
+        Cache cache = this.cache;
+        if (cache.snapshot != snapshot) this.cache = cache = new Cache(snapshot);
+
+        /* Find the cache for our type */
+        ConcurrentHashMap<String, Object> values = cache.types.get(type);
+        if (values == null) values = cache.types.computeIfAbsent(type, (t) -> new ConcurrentHashMap<>());
+
+        /* Do we have a cached value? */
+        final Object cached = values.get(string);
+        if (cached != null) return type.cast(cached);
+
+        /* Convert from the very same snapshot, and cache (we don't cache missing values) */
+        final T value = snapshot.convert(key, type, converter);
+        if (value != null) values.putIfAbsent(string, value);
+        return value;
+    }
+
+    /* ====================================================================== */
+
+    /* Converted values for a snapshot: type -> key -> converted value */
+    private static final class Cache {
+
+        private final Configurations snapshot;
+        private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Object>> types = new ConcurrentHashMap<>();
+
+        private Cache(Configurations snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.usrz.libs.logging.Log;
+
+/**
+ * A {@link Configurations} implementation parsing mappings from a
+ * {@link URL} like {@link URLConfigurations} does, but <em>caching</em>
+ * them both in memory and on disk.
+ *
+ * <p>When fetching <em>HTTP</em> and <em>HTTPS</em> URLs, the
+ * <code>ETag</code> and <code>Last-Modified</code> headers returned by the
+ * server are remembered, and sent back (as <code>If-None-Match</code> and
+ * <code>If-Modified-Since</code>) on subsequent requests. Should the
+ * server reply with <em>304 Not Modified</em>, the mappings parsed last
+ * time will be reused, without downloading or parsing anything.</p>
+ *
+ * <p>Each document is also saved, with its validators, in a <em>cache
+ * directory</em> (in a file named after the <em>SHA-256</em> hash of the
+ * URL), so that after a restart conditional requests can still be made,
+ * and mappings will still be available when the server can not be reached
+ * or fails. URLs other than <em>HTTP</em> and <em>HTTPS</em> are simply
+ * parsed, and never cached.</p>
+ *
+ * <p>Cached documents are trusted as if they came from the server, so the
+ * cache directory must be <em>private</em>: it is created readable and
+ * writable only by its owner, and directories or files not owned by the
+ * current user (or writable by others) are never read nor written. There
+ * is no default directory, as a shared one (like the system's temporary
+ * directory) could be prepared in advance by other users.</p>
+ *
+ * <p>In memory, documents are cached by URL <em>and</em> directory, and
+ * only the 128 most recently used are kept.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+public class CachingURLConfigurations extends DelegateConfigurations {
+
+    /* Connect and read timeouts, in milliseconds, for all HTTP fetches */
+    static final int TIMEOUT = 30000;
+    /* The maximum number of documents cached in memory */
+    private static final int MAXIMUM_CACHED = 128;
+
+    /* Our log */
+    private static final Log log = new Log();
+
+    /* Mappings parsed from each URL, and their validators, by cache file */
+    static final Map<Path, Cached> cache = Collections.synchronizedMap(new Recent());
+
+    /* ====================================================================== */
+    /* CONSTRUCTION                                                           */
+    /* ====================================================================== */
+
+    /**
+     * Create a new {@link CachingURLConfigurations} instance parsing (or
+     * reusing the cached mappings of) the specified {@link URL}, and
+     * caching its contents in the specified (private) directory.
+     */
+    public CachingURLConfigurations(URL url, File directory)
+    throws ConfigurationsException {
+        super(fetch(url, directory));
+    }
+
+    /* ====================================================================== */
+    /* FETCHING                                                               */
+    /* ====================================================================== */
+
+    /**
+     * Fetch the specified {@link URL}, conditionally if its validators are
+     * known, returning its (possibly cached) mappings.
+     */
+    static final Configurations fetch(URL url, File directory)
+    throws ConfigurationsException {
+        if (url == null) throw new NullPointerException("Null URL");
+        if (directory == null) throw new NullPointerException("Null directory");
+        if (!isHttp(url)) return new URLConfigurations(url);
+
+        final Path path = Cached.path(url, directory);
+        final Cached cached = cached(url, path);
+        return attempt(url, cached, () -> {
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            connection.setUseCaches(false);
+            if (cached.etag != null) connection.setRequestProperty("If-None-Match", cached.etag);
+            if (cached.lastModified != null) connection.setRequestProperty("If-Modified-Since", cached.lastModified);
+
+            /* Read our document fully, but only when we got one */
+            final int status = connection.getResponseCode();
+            final byte[] body;
+            if (status == HttpURLConnection.HTTP_OK) {
+                try (final InputStream input = connection.getInputStream()) {
+                    body = read(input);
+                }
+            } else {
+                body = null;
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED) connection.getInputStream().close();
+                else connection.disconnect();
+            }
+
+            return response(url, path, cached, status, status + " " + connection.getResponseMessage(),
+                            connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), body);
+        });
+    }
+
+    /**
+     * Fetch the specified {@link URL} <em>asynchronously</em>, as
+     * {@link #fetch(URL, File)} would, never blocking the caller's thread
+     * on the network: <em>HTTP</em> and <em>HTTPS</em> URLs are fetched with
+     * an {@link HttpClient}, anything else is parsed in the
+     * {@linkplain ForkJoinPool#commonPool() common pool}.
+     */
+    static final CompletableFuture<Configurations> fetchAsync(URL url, File directory) {
+        if (url == null) throw new NullPointerException("Null URL");
+        if (directory == null) throw new NullPointerException("Null directory");
+        if (!isHttp(url)) return CompletableFuture.supplyAsync(() -> new URLConfigurations(url), ForkJoinPool.commonPool());
+
+        final Path path = Cached.path(url, directory);
+        final Cached cached = cached(url, path);
+        final HttpRequest request;
+        try {
+            final HttpRequest.Builder builder = HttpRequest.newBuilder(url.toURI()).timeout(Duration.ofMillis(TIMEOUT)).GET();
+            if (cached.etag != null) builder.header("If-None-Match", cached.etag);
+            if (cached.lastModified != null) builder.header("If-Modified-Since", cached.lastModified);
+            request = builder.build();
+        } catch (URISyntaxException | IllegalArgumentException exception) {
+            return CompletableFuture.supplyAsync(() -> attempt(url, cached, () -> { throw exception; }), ForkJoinPool.commonPool());
+        }
+
+        return AsyncConfigurations.Client.CLIENT.sendAsync(request, BodyHandlers.ofByteArray()).handleAsync((response, throwable) -> attempt(url, cached, () -> {
+            if (throwable != null) {
+                final Throwable cause = (throwable instanceof CompletionException) && (throwable.getCause() != null) ? throwable.getCause() : throwable;
+                if (cause instanceof Exception) throw (Exception) cause;
+                throw new ConfigurationsException("Error loading URL " + url, cause);
+            }
+
+            final int status = response.statusCode();
+            return response(url, path, cached, status, Integer.toString(status),
+                            response.headers().firstValue("ETag").orElse(null),
+                            response.headers().firstValue("Last-Modified").orElse(null),
+                            status == HttpURLConnection.HTTP_OK ? response.body() : null);
+        }), ForkJoinPool.commonPool());
+    }
+
+    /* ====================================================================== */
+
+    /* Only HTTP and HTTPS URLs are ever cached */
+    private static boolean isHttp(URL url) {
+        final String protocol = url.getProtocol();
+        return "http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol);
+    }
+
+    /* What we know about a URL (in a directory), from memory or disk */
+    private static Cached cached(URL url, Path path) {
+        final Cached cached = cache.get(path);
+        if (cached != null) return cached;
+
+        final Cached read = Cached.read(url, path);
+        final Cached existing = cache.putIfAbsent(path, read);
+        return existing == null ? read : existing;
+    }
+
+    /* Attempt to fetch a URL, falling back to our cached configurations on errors */
+    private static Configurations attempt(URL url, Cached cached, Callable<Configurations> fetcher)
+    throws ConfigurationsException {
+        try {
+            return fetcher.call();
+        } catch (IOException exception) {
+            return fallback(url, cached, exception.getMessage(), exception);
+        } catch (ConfigurationsException exception) {
+            return fallback(url, cached, exception.getMessage(), exception);
+        } catch (Exception exception) {
+            return fallback(url, cached, exception.getMessage(), new ConfigurationsException("Error loading URL " + url, exception));
+        }
+    }
+
+    /* Handle a response, reusing, or parsing and caching, our configurations */
+    private static Configurations response(URL url, Path path, Cached cached, int status, String reason, String etag, String lastModified, byte[] body)
+    throws IOException, ConfigurationsException {
+        if ((status == HttpURLConnection.HTTP_NOT_MODIFIED) && (cached.body != null)) {
+            log.debug("URL %s not modified, reusing cached configurations", url);
+            return cached.configurations(url);
+        }
+
+        if (status != HttpURLConnection.HTTP_OK) return fallback(url, cached, "status " + reason, null);
+
+        log.debug("Parsing configurations from URL %s", url);
+        final Configurations configurations = URLConfigurations.parse(url, new ByteArrayInputStream(body));
+        final Cached fetched = new Cached(etag, lastModified, body, configurations);
+        cache.put(path, fetched);
+        fetched.write(url, path);
+        return configurations;
+    }
+
+    /* Return our cached configurations after a failure, if we have them */
+    private static Configurations fallback(URL url, Cached cached, String message, Exception exception)
+    throws ConfigurationsException {
+        if (cached.body != null) {
+            log.warn("Error fetching URL %s, using cached configurations: %s", url, message);
+            return cached.configurations(url);
+        }
+
+        if (exception instanceof ConfigurationsException) throw (ConfigurationsException) exception;
+        throw new ConfigurationsException("Error loading URL " + url + ": " + message, exception);
+    }
+
+    /* Read an input stream fully */
+    private static byte[] read(InputStream input)
+    throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    /* ====================================================================== */
+    /* CACHED DOCUMENTS                                                       */
+    /* ====================================================================== */
+
+    /* Our in-memory cache, evicting the least recently used documents */
+    private static final class Recent extends LinkedHashMap<Path, Cached> {
+
+        private static final long serialVersionUID = 1L;
+
+        private Recent() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Cached> eldest) {
+            return size() > MAXIMUM_CACHED;
+        }
+    }
+
+    /* A cached document, its validators and (lazily) its mappings */
+    static final class Cached {
+
+        /* Our validators, and the document they validate */
+        private final String etag;
+        private final String lastModified;
+        private final byte[] body;
+        /* The mappings parsed from our document */
+        private volatile Configurations configurations;
+
+        private Cached(String etag, String lastModified, byte[] body, Configurations configurations) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+            this.configurations = configurations;
+        }
+
+        /* Return our mappings, parsing our document only once */
+        private Configurations configurations(URL url)
+        throws ConfigurationsException {
+            /* Benign race: at worst we parse this twice */
+            if (configurations != null) return configurations;
+            log.debug("Parsing cached configurations for URL %s", url);
+            try {
+                return configurations = URLConfigurations.parse(url, new ByteArrayInputStream(body));
+            } catch (IOException exception) {
+                throw new ConfigurationsException("I/O error parsing cached configurations for URL " + url, exception);
+            }
+        }
+
+        /* Read whatever we have cached on disk for a URL, if we can trust it */
+        private static Cached read(URL url, Path path) {
+            if (!Files.isRegularFile(path, NOFOLLOW_LINKS)) return new Cached(null, null, null, null);
+
+            try {
+                if (!(trusted(path.getParent()) && trusted(path))) {
+                    log.warn("Ignoring cached configurations for URL %s in %s, not private to us", url, path);
+                    return new Cached(null, null, null, null);
+                }
+            } catch (IOException exception) {
+                log.warn("I/O error checking cached configurations for URL %s in %s: %s", url, path, exception.getMessage());
+                return new Cached(null, null, null, null);
+            }
+
+            try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path, NOFOLLOW_LINKS)))) {
+                /* Ignore files belonging to other URLs (were there collisions) */
+                if (!url.toExternalForm().equals(input.readUTF())) return new Cached(null, null, null, null);
+
+                final String etag = input.readUTF();
+                final String lastModified = input.readUTF();
+                final int length = input.readInt();
+                if ((length < 0) || (length > Files.size(path))) throw new IOException("Invalid document length " + length);
+                final byte[] body = new byte[length];
+                input.readFully(body);
+
+                log.debug("Found cached configurations for URL %s in %s", url, path);
+                return new Cached(etag.isEmpty() ? null : etag, lastModified.isEmpty() ? null : lastModified, body, null);
+            } catch (IOException exception) {
+                log.warn("I/O error reading cached configurations for URL %s from %s: %s", url, path, exception.getMessage());
+                return new Cached(null, null, null, null);
+            }
+        }
+
+        /* Write our document and validators to disk, atomically */
+        private void write(URL url, Path path) {
+            try {
+                if (!directory(path.getParent())) {
+                    log.warn("Not caching configurations for URL %s, directory %s not private to us", url, path.getParent());
+                    return;
+                }
+
+                /* Temporary files are only readable and writable by us */
+                final Path temporary = Files.createTempFile(path.getParent(), ".cache-", ".tmp");
+                try {
+                    try (final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                        output.writeUTF(url.toExternalForm());
+                        output.writeUTF(etag == null ? "" : etag);
+                        output.writeUTF(lastModified == null ? "" : lastModified);
+                        output.writeInt(body.length);
+                        output.write(body);
+                    }
+                    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException exception) {
+                log.warn("I/O error caching configurations for URL %s in %s: %s", url, path, exception.getMessage());
+            }
+        }
+
+        /* Create our cache directory (owner only) if needed, and check it's private */
+        private static boolean directory(Path directory)
+        throws IOException {
+            if (Files.notExists(directory, NOFOLLOW_LINKS)) {
+                if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                    Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+                } else {
+                    Files.createDirectories(directory);
+                }
+            }
+            return Files.isDirectory(directory, NOFOLLOW_LINKS) && trusted(directory);
+        }
+
+        /* Check that a path is owned by us, and (if we can tell) not writable by others */
+        private static boolean trusted(Path path)
+        throws IOException {
+            final UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+            if (!user.equals(Files.getOwner(path, NOFOLLOW_LINKS))) return false;
+
+            final PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class, NOFOLLOW_LINKS);
+            if (view == null) return true;
+            final Set<PosixFilePermission> permissions = view.readAttributes().permissions();
+            return !(permissions.contains(PosixFilePermission.GROUP_WRITE) || permissions.contains(PosixFilePermission.OTHERS_WRITE));
+        }
+
+        /* The file caching the document of a URL, named after its SHA-256 */
+        private static Path path(URL url, File directory) {
+            try {
+                final byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.toExternalForm().getBytes(StandardCharsets.UTF_8));
+                final StringBuilder builder = new StringBuilder(hash.length * 2);
+                for (byte b: hash) builder.append(Character.forDigit((b >> 4) & 0x0F, 16)).append(Character.forDigit(b & 0x0F, 16));
+                return directory.toPath().toAbsolutePath().resolve(builder.toString());
+            } catch (NoSuchAlgorithmException exception) {
+                throw new IllegalStateException("SHA-256 not available", exception);
+            }
+        }
+    }
+}
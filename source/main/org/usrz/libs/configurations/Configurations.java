@@ -26,19 +26,22 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.time.Duration;
-import java.time.format.DateTimeParseException;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.TreeSet;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.BiFunction;
 import java.util.function.DoublePredicate;
 import java.util.function.IntPredicate;
 import java.util.function.LongPredicate;
@@ -123,19 +126,50 @@ public abstract class Configurations implements Map<String, String> {
         return new MappedConfigurations(map){};
     }
 
+    /**
+     * Return an <em>immutable</em> snapshot of this instance.
+     *
+     * <p>Nearly all {@link Configurations} are immutable, and will simply
+     * return themselves, but those whose mappings can change over time
+     * (for example when {@linkplain ReloadingFileConfigurations reloaded})
+     * must return the instance they are currently delegating to.</p>
+     *
+     * <p>Views (as in {@link #strip(String)}) and groups are always created
+     * over a snapshot.</p>
+     */
+    Configurations snapshot() {
+        return this;
+    }
+
+    /**
+     * Return <b>true</b> if this instance maps the specified key either to
+     * a {@link String} or to a {@link Password} (which, unlike the former,
+     * is never reported by {@link #containsKey(Object)}).
+     */
+    boolean maps(Object key) {
+        if (containsKey(key)) return true;
+        if ((key != null) && (!(key instanceof String))) return false;
+        try {
+            return getPassword(key) != null;
+        } catch (UnsupportedOperationException exception) {
+            return true; // mapped, but not to a password
+        }
+    }
+
     /**
      * Merge the mappings from the specified {@link Map} with those contained by
      * this instance and return a <em>new</em> {@link Configurations} instance.
      *
      * <p>If a mapping is contained both in the specified {@link Map} and in
      * this instance, the one contained by this instance will be kept.</p>
+     *
+     * <p>The returned instance is a {@link LayeredConfigurations} with this
+     * instance on top of the specified {@link Map}, and no mappings will be
+     * copied (unless the {@link Map} is not a {@link Configurations}).</p>
      */
     public final Configurations merge(Map<?, ?> map)
     throws ConfigurationsException {
-        final Map<Object, Object> configurations = new HashMap<>();
-        configurations.putAll(map);
-        configurations.putAll(this);
-        return wrap(configurations);
+        return new LayeredConfigurations(this, layer(map));
     }
 
     /**
@@ -145,14 +179,39 @@ public abstract class Configurations implements Map<String, String> {
      *
      * <p>If a mapping is contained both in the specified {@link Map} and in
      * this instance, the one contained by this instance will be overridden
-     * with the one from the specified {@link Map}.</p>
+     * with the one from the specified {@link Map}. Keys mapped to
+     * <b>null</b> or empty values in the specified {@link Map} will have
+     * their mappings <em>removed</em> from the returned instance.</p>
+     *
+     * <p>The returned instance is a {@link LayeredConfigurations} with the
+     * specified {@link Map} on top of this instance, and no mappings will be
+     * copied (unless the {@link Map} is not a {@link Configurations}).</p>
      */
     public final Configurations override(Map<?, ?> map)
     throws ConfigurationsException {
-        final Map<Object, Object> configurations = new HashMap<>();
-        configurations.putAll(this);
-        configurations.putAll(map);
-        return wrap(configurations);
+        final Configurations layer = layer(map);
+        final Set<String> removed = removed(map);
+        return new LayeredConfigurations(layer, removed.isEmpty() ? this : new ViewConfigurations.Removed(snapshot(), removed));
+    }
+
+    /* Return the keys of null or empty values in a (plain) map */
+    private static Set<String> removed(Map<?, ?> map) {
+        if (map instanceof Configurations) return Collections.emptySet();
+
+        final Set<String> removed = new HashSet<>();
+        for (Entry<?, ?> entry: map.entrySet()) {
+            final Object value = entry.getValue();
+            if ((value == null) || ((!(value instanceof Password)) && (value.toString().trim().length() == 0))) {
+                removed.add(MappedConfigurations.validateKey(entry.getKey()));
+            }
+        }
+        return removed;
+    }
+
+    /* Return a map as a Configurations layer, wrapping it if needed */
+    private Configurations layer(Map<?, ?> map) {
+        if (map == null) throw new NullPointerException("Null map");
+        return map instanceof Configurations ? (Configurations) map : wrap(map);
     }
 
     /* ====================================================================== */
@@ -177,21 +236,21 @@ public abstract class Configurations implements Map<String, String> {
      * prefix.key1 = value1
      * prefix.key2 = value2
      * </pre>
+     *
+     * <p>The returned instance is a <em>view</em> over this one, and no
+     * mappings will be copied.</p>
      */
     public final Configurations prefix(String prefix)
     throws ConfigurationsException {
 
         /* Check and normalize the prefix */
         if (prefix == null) throw new NullPointerException("Null prefix");
-        if (!prefix.endsWith(".")) prefix += ".";
-
-        /* Remap adding the new prefix */
-        final Map<String, String> configurations = new HashMap<>();
-        for (Entry<String, String> entry: entrySet())
-            configurations.put(prefix + entry.getKey(), entry.getValue());
+        while (prefix.endsWith(".")) prefix = prefix.substring(0, prefix.length() - 1);
+        prefix = MappedConfigurations.validateKey(prefix);
+        if (prefix.length() == 0) return snapshot();
 
-        /* All done */
-        return wrap(configurations);
+        /* Return a view adding the prefix */
+        return new ViewConfigurations.Prefixed(snapshot(), prefix);
     }
 
     /**
@@ -214,6 +273,9 @@ public abstract class Configurations implements Map<String, String> {
      * prefix.key1 = value1
      * prefix.key2 = value2
      * </pre>
+     *
+     * <p>The returned instance is a <em>view</em> over this one, and no
+     * mappings will be copied.</p>
      */
     public final Configurations extract(String prefix)
     throws ConfigurationsException {
@@ -221,19 +283,9 @@ public abstract class Configurations implements Map<String, String> {
         /* Check and normalize the prefix */
         if (prefix == null) throw new NullPointerException("Null prefix");
         while (prefix.endsWith(".")) prefix = prefix.substring(0, prefix.length() - 1);
-        final String prefixDot = prefix + ".";
 
-        /* Remap stripping the prefix */
-        final Map<String, String> configurations = new HashMap<>();
-        for (Entry<String, String> entry: entrySet()) {
-            final String key = entry.getKey();
-            final String value = entry.getValue();
-            if (prefix.equals(key) || key.startsWith(prefixDot))
-                configurations.put(key, value);
-        }
-
-        /* All done */
-        return wrap(configurations);
+        /* Return a view extracting the prefix */
+        return new ViewConfigurations.Extracted(snapshot(), prefix);
     }
 
     /**
@@ -256,6 +308,9 @@ public abstract class Configurations implements Map<String, String> {
      * key1 = prefixed value 1
      * key2 = prefixed value 2
      * </pre>
+     *
+     * <p>The returned instance is a <em>view</em> over this one, and no
+     * mappings will be copied.</p>
      */
     public final Configurations strip(String prefix)
     throws ConfigurationsException {
@@ -263,21 +318,9 @@ public abstract class Configurations implements Map<String, String> {
         /* Check and normalize the prefix */
         if (prefix == null) throw new NullPointerException("Null prefix");
         while (prefix.endsWith(".")) prefix = prefix.substring(0, prefix.length() - 1);
-        final String prefixDot = prefix + ".";
-        final int prefixLen = prefixDot.length();
 
-        /* Remap stripping the prefix */
-        final Map<String, String> configurations = new HashMap<>();
-        for (Entry<String, String> entry: entrySet()) {
-            final String key = entry.getKey();
-            final String value = entry.getValue();
-            if (prefix.equals(key)) configurations.put("", value);
-            if (key.startsWith(prefixDot))
-                configurations.put(key.substring(prefixLen, key.length()), value);
-        }
-
-        /* All done */
-        return wrap(configurations);
+        /* Return a view stripping the prefix */
+        return new ViewConfigurations.Stripped(snapshot(), prefix);
     }
 
     /* ====================================================================== */
@@ -322,20 +365,25 @@ public abstract class Configurations implements Map<String, String> {
         if (prefix == null) throw new NullPointerException("Null prefix");
         if (!prefix.endsWith(".")) prefix += ".";
 
-        /* Do we have anything to tokenize? */
-        final Set<String> groups = new HashSet<>();
-        for (String key: keySet()) {
-            if (key.startsWith(prefix)) {
-                int position = key.indexOf('.', prefix.length());
-                if (position < 0) position = key.length();
-                groups.add(key.substring(prefix.length(), position));
+        /* Look at all the keys starting with our prefix */
+        final Configurations snapshot = snapshot();
+        final int length = prefix.length();
+        final Map<String, Configurations> grouped = new HashMap<>();
+        String last = null;
+        for (Entry<String, String> entry: snapshot.entries(prefix)) {
+            final String key = entry.getKey();
+
+            /* Skip quickly if this key belongs to the last group we saw */
+            if ((last != null) && key.startsWith(last, length)) {
+                final int end = length + last.length();
+                if ((key.length() == end) || (key.charAt(end) == '.')) continue;
             }
-        }
 
-        /* Extract the various sub-configurations */
-        final Map<String, Configurations> grouped = new HashMap<>();
-        for (String group: groups) {
-            grouped.put(group, strip(prefix + group));
+            /* Find the group name and extract the sub-configurations */
+            int position = key.indexOf('.', length);
+            if (position < 0) position = key.length();
+            last = key.substring(length, position);
+            if (!grouped.containsKey(last)) grouped.put(last, snapshot.strip(prefix + last));
         }
 
         /* All done, return our map, made unmodifiable */
@@ -492,6 +540,21 @@ public abstract class Configurations implements Map<String, String> {
      */
     public abstract String getString(Object key, String defaultValue);
 
+    /**
+     * Return the value of associated with the given <em>key</em> converted
+     * by the specified {@link BiFunction} (invoked with the key and its value)
+     * or <b>null</b> if no mapping was found.
+     *
+     * <p>All the conversion methods of this class end up here, and the same
+     * {@link Class} is always paired with the same converter, therefore
+     * implementations can safely cache results by <em>key</em> and
+     * <em>type</em>.</p>
+     */
+    <T> T convert(Object key, Class<T> type, BiFunction<Object, String, T> converter) {
+        final String value = this.get(key);
+        return value == null ? null : converter.apply(key, value);
+    }
+
     /* ====================================================================== */
     /* CONVERSION METHODS                                                     */
     /* ====================================================================== */
@@ -591,12 +654,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final UUID get(Object key, UUID defaultValue) {
-        final String value = this.get(key);
-        try {
-            return value == null ? defaultValue : UUID.fromString(value);
-        } catch (IllegalArgumentException exception) {
-            throw new ConfigurationsException("Invalid UUID " + value + " for key \"" + key + "\"", exception);
-        }
+        final UUID value = convert(key, UUID.class, UUID_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /**
@@ -605,8 +664,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final Duration get(Object key, Duration defaultValue) {
-        final String value = this.get(key);
-        return value == null ? defaultValue : duration(value);
+        final Duration value = convert(key, Duration.class, DURATION_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /**
@@ -615,8 +674,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final File get(Object key, File defaultValue) {
-        final String value = this.get(key);
-        return value == null ? defaultValue : new File(value);
+        final File value = convert(key, File.class, FILE_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /**
@@ -625,12 +684,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final URL get(Object key, URL defaultValue) {
-        final String value = this.get(key);
-        try {
-            return value == null ? defaultValue : new URL(value);
-        } catch (MalformedURLException exception) {
-            throw new ConfigurationsException("Invalid URL " + value + " for key \"" + key + "\"", exception);
-        }
+        final URL value = convert(key, URL.class, URL_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /**
@@ -639,12 +694,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final URI get(Object key, URI defaultValue) {
-        final String value = this.get(key);
-        try {
-            return value == null ? defaultValue : new URI(value);
-        } catch (URISyntaxException exception) {
-            throw new ConfigurationsException("Invalid URI " + value + " for key \"" + key + "\"", exception);
-        }
+        final URI value = convert(key, URI.class, URI_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /* ====================================================================== */
@@ -657,12 +708,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final int get(Object key, int defaultValue) {
-        final String value = this.get(key);
-        try {
-            return value == null ? defaultValue : Integer.parseInt(value);
-        } catch (NumberFormatException exception) {
-            throw new ConfigurationsException("Invalid int " + value + " for key \"" + key + "\"", exception);
-        }
+        final Integer value = convert(key, Integer.class, INTEGER_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /**
@@ -671,12 +718,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final long get(Object key, long defaultValue) {
-        final String value = this.get(key);
-        try {
-            return value == null ? defaultValue : Long.parseLong(value);
-        } catch (NumberFormatException exception) {
-            throw new ConfigurationsException("Invalid long " + value + " for key \"" + key + "\"", exception);
-        }
+        final Long value = convert(key, Long.class, LONG_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /**
@@ -685,12 +728,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final double get(Object key, double defaultValue) {
-        final String value = this.get(key);
-        try {
-            return value == null ? defaultValue : Double.parseDouble(value);
-        } catch (NumberFormatException exception) {
-            throw new ConfigurationsException("Invalid double " + value + " for key \"" + key + "\"", exception);
-        }
+        final Double value = convert(key, Double.class, DOUBLE_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /**
@@ -699,14 +738,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final boolean get(Object key, boolean defaultValue) {
-        try {
-            final String value = this.get(key).toLowerCase();
-            if ("true".equals(value)) return true;
-            if ("false".equals(value)) return false;
-            throw new ConfigurationsException("Invalid boolean " + value + " for key \"" + key + "\"");
-        } catch (NullPointerException exception) {
-            return defaultValue;
-        }
+        final Boolean value = convert(key, Boolean.class, BOOLEAN_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /* ====================================================================== */
@@ -753,13 +786,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final Integer getInteger(Object key, Integer defaultValue) {
-        final String value = this.get(key);
-        if (value == null) return defaultValue;
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException exception) {
-            throw new ConfigurationsException("Invalid int " + value + " for key \"" + key + "\"", exception);
-        }
+        final Integer value = convert(key, Integer.class, INTEGER_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /**
@@ -768,13 +796,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final Long getLong(Object key, Long defaultValue) {
-        final String value = this.get(key);
-        if (value == null) return defaultValue;
-        try {
-            return Long.parseLong(value);
-        } catch (NumberFormatException exception) {
-            throw new ConfigurationsException("Invalid long " + value + " for key \"" + key + "\"", exception);
-        }
+        final Long value = convert(key, Long.class, LONG_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /**
@@ -783,13 +806,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final Double getDouble(Object key, Double defaultValue) {
-        final String value = this.get(key);
-        if (value == null) return defaultValue;
-        try {
-            return Double.parseDouble(value);
-        } catch (NumberFormatException exception) {
-            throw new ConfigurationsException("Invalid double " + value + " for key \"" + key + "\"", exception);
-        }
+        final Double value = convert(key, Double.class, DOUBLE_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /**
@@ -798,14 +816,8 @@ public abstract class Configurations implements Map<String, String> {
      * was found.
      */
     public final Boolean getBoolean(Object key, Boolean defaultValue) {
-        try {
-            final String value = this.get(key).toLowerCase();
-            if ("true".equals(value)) return true;
-            if ("false".equals(value)) return false;
-            throw new ConfigurationsException("Invalid boolean " + value + " for key \"" + key + "\"");
-        } catch (NullPointerException exception) {
-            return defaultValue;
-        }
+        final Boolean value = convert(key, Boolean.class, BOOLEAN_CONVERTER);
+        return value == null ? defaultValue : value;
     }
 
     /* ====================================================================== */
@@ -1021,25 +1033,77 @@ public abstract class Configurations implements Map<String, String> {
 
     /**
      * Returns a {@link Set} view of the keys contained in this instance.
+     *
+     * <p>The default implementation returns a <em>live</em> view projecting
+     * the keys of {@link #entrySet()}, copying nothing, and looking up keys
+     * with {@link #containsKey(Object)}.</p>
      */
     @Override
     public Set<String> keySet() {
-        final Set<String> keys = new HashSet<>();
-        for (Entry<String, String> entry: entrySet())
-            keys.add(entry.getKey());
-        return Collections.unmodifiableSet(keys);
+        return new AbstractSet<String>() {
+
+            @Override
+            public Iterator<String> iterator() {
+                final Iterator<Entry<String, String>> iterator = entrySet().iterator();
+                return new Iterator<String>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return iterator.next().getKey();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object object) {
+                return containsKey(object);
+            }
+
+            @Override
+            public int size() {
+                return Configurations.this.size();
+            }
+        };
     }
 
     /**
      * Returns a {@link Collection} view of the values contained in this
      * instance.
+     *
+     * <p>The default implementation returns a <em>live</em> view projecting
+     * the values of {@link #entrySet()}, copying nothing.</p>
      */
     @Override
     public Collection<String> values() {
-        final List<String> values = new ArrayList<>();
-        for (Entry<String, String> entry: entrySet())
-            values.add(entry.getValue());
-        return Collections.unmodifiableCollection(values);
+        return new AbstractCollection<String>() {
+
+            @Override
+            public Iterator<String> iterator() {
+                final Iterator<Entry<String, String>> iterator = entrySet().iterator();
+                return new Iterator<String>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return iterator.next().getValue();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return Configurations.this.size();
+            }
+        };
     }
 
     /**
@@ -1048,6 +1112,23 @@ public abstract class Configurations implements Map<String, String> {
     @Override
     public abstract Set<Entry<String, String>> entrySet();
 
+    /**
+     * Returns a {@link Collection} of all the mappings whose keys start with
+     * the specified {@link String}, sorted by key.
+     *
+     * <p>The default implementation filters and sorts the whole
+     * {@link #entrySet()}, implementations keeping a sorted index of their
+     * keys should override this.</p>
+     */
+    Collection<Entry<String, String>> entries(String start) {
+        final Map<String, String> entries = new TreeMap<>();
+        for (Entry<String, String> entry: entrySet()) {
+            final String key = entry.getKey();
+            if (key.startsWith(start)) entries.put(key, entry.getValue());
+        }
+        return Collections.unmodifiableCollection(entries.entrySet());
+    }
+
     /* ====================================================================== */
     /* DELEGATED METHODS                                                      */
     /* ====================================================================== */
@@ -1076,10 +1157,13 @@ public abstract class Configurations implements Map<String, String> {
     /**
      * Returns <b>true</b> if this instance maps one or more keys to the
      * specified value.
+     *
+     * <p>Values are scanned through the {@link #values()} view, and nothing
+     * is copied.</p>
      */
     @Override
     public final boolean containsValue(Object value) {
-        if (value == null) return false;
+        if (!(value instanceof String)) return false;
         for (String string: values())
             if (string.equals(value)) return true;
         return false;
@@ -1108,12 +1192,11 @@ public abstract class Configurations implements Map<String, String> {
      * {@linkplain Properties java properties}.</p>
      */
     public final Configurations list(Writer writer) {
-        final Set<String> sorted = new TreeSet<>(keySet());
         try {
-            for (String key: sorted) {
-                writer.write(key);
+            for (Entry<String, String> entry: snapshot().entries("")) {
+                writer.write(entry.getKey());
                 writer.write(" = ");
-                writer.write(this.get(key));
+                writer.write(entry.getValue());
                 writer.write(LINE_SEPARATOR);
             }
             writer.flush();
@@ -1123,6 +1206,54 @@ public abstract class Configurations implements Map<String, String> {
         }
     }
 
+    /* ====================================================================== */
+    /* DIFFERENCES                                                            */
+    /* ====================================================================== */
+
+    /**
+     * Compute the differences between this (<em>old</em>) instance and the
+     * specified (<em>new</em>) {@link Configurations}.
+     *
+     * <p>Both instances are compared by walking their mappings
+     * {@linkplain #entries(String) sorted by key} side by side, in time
+     * proportional to their sizes, and looking up no key.</p>
+     */
+    public final ConfigurationsDiff diff(Configurations configurations) {
+        if (configurations == null) throw new NullPointerException("Null configurations");
+
+        final Configurations previous = snapshot();
+        final Configurations current = configurations.snapshot();
+        if (previous == current) return ConfigurationsDiff.EMPTY;
+
+        final Iterator<Entry<String, String>> oldEntries = previous.entries("").iterator();
+        final Iterator<Entry<String, String>> newEntries = current.entries("").iterator();
+        final List<String> added = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+        final List<String> changed = new ArrayList<>();
+
+        /* Merge our two sorted sequences */
+        Entry<String, String> oldEntry = oldEntries.hasNext() ? oldEntries.next() : null;
+        Entry<String, String> newEntry = newEntries.hasNext() ? newEntries.next() : null;
+        while ((oldEntry != null) || (newEntry != null)) {
+            final int comparison = oldEntry == null ? 1 :
+                                   newEntry == null ? -1 :
+                                   oldEntry.getKey().compareTo(newEntry.getKey());
+
+            if (comparison < 0) {
+                removed.add(oldEntry.getKey());
+            } else if (comparison > 0) {
+                added.add(newEntry.getKey());
+            } else if (!oldEntry.getValue().equals(newEntry.getValue())) {
+                changed.add(oldEntry.getKey());
+            }
+
+            if (comparison <= 0) oldEntry = oldEntries.hasNext() ? oldEntries.next() : null;
+            if (comparison >= 0) newEntry = newEntries.hasNext() ? newEntries.next() : null;
+        }
+
+        return new ConfigurationsDiff(added, removed, changed);
+    }
+
     /* ====================================================================== */
     /* OBJECT METHODS                                                         */
     /* ====================================================================== */
@@ -1135,10 +1266,7 @@ public abstract class Configurations implements Map<String, String> {
      */
     @Override
     public final int hashCode() {
-        int hash = 0;
-        for (Entry<String, String> entry: entrySet())
-            hash += (entry.getKey().hashCode() ^ entry.getValue().hashCode());
-        return hash ^ Configurations.class.hashCode();
+        return hash();
     }
 
     /**
@@ -1155,6 +1283,14 @@ public abstract class Configurations implements Map<String, String> {
         try {
             final Configurations configurations = (Configurations) object;
             if (size() != configurations.size()) return false;
+
+            /* Different fingerprints (when both known) mean different mappings */
+            final long fingerprint = fingerprint();
+            if (fingerprint != 0) {
+                final long other = configurations.fingerprint();
+                if ((other != 0) && (other != fingerprint)) return false;
+            }
+
             for (Entry<String, String> entry: entrySet()) {
                 final String key = entry.getKey();
                 final String value = entry.getValue();
@@ -1167,6 +1303,49 @@ public abstract class Configurations implements Map<String, String> {
         }
     }
 
+    /**
+     * Compute the <em>hash-code</em> of this instance, iterating over all
+     * its mappings.
+     *
+     * <p>Immutable implementations should compute this only once.</p>
+     */
+    int hash() {
+        int hash = 0;
+        for (Entry<String, String> entry: entrySet())
+            hash += (entry.getKey().hashCode() ^ entry.getValue().hashCode());
+        return hash ^ Configurations.class.hashCode();
+    }
+
+    /**
+     * Return the 64-bit <em>fingerprint</em> of this instance's mappings, or
+     * zero if unknown.
+     *
+     * <p>Instances with the same mappings always have the same fingerprint,
+     * and {@link #equals(Object)} will not compare the mappings of instances
+     * whose fingerprints are known to differ. The default implementation
+     * returns zero, immutable implementations should return their
+     * {@linkplain #computeFingerprint() computed} fingerprint instead.</p>
+     */
+    long fingerprint() {
+        return 0;
+    }
+
+    /**
+     * Compute the 64-bit <em>fingerprint</em> of this instance's mappings,
+     * iterating over all of them. The returned value is never zero.
+     */
+    final long computeFingerprint() {
+        long fingerprint = 0;
+        for (Entry<String, String> entry: entrySet()) {
+            /* Spread both hash codes over 64 bits, as MurmurHash3 finalizes */
+            long hash = ((long) entry.getKey().hashCode() << 32) ^ (entry.getValue().hashCode() & 0xFFFFFFFFL);
+            hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+            hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+            fingerprint += hash ^ (hash >>> 33);
+        }
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
     /* ====================================================================== */
     /* Unsupported METHODS                                                    */
     /* ====================================================================== */
@@ -1211,22 +1390,65 @@ public abstract class Configurations implements Map<String, String> {
         throw new UnsupportedOperationException();
     }
 
+    /* ====================================================================== */
+    /* CONVERTERS                                                             */
     /* ====================================================================== */
 
-    private Duration duration(String what) {
-        final String converted = what.toUpperCase()
-                                     .replaceAll("\\s", "")
-                                     .replaceAll("^(P)?", "P")
-                                     .replaceAll("MIN(UTE)?(S)?", "M")
-                                     .replaceAll("H(OU)?R(S)?", "H")
-                                     .replaceAll("SEC(OND)?(S)?", "S")
-                                     .replaceAll("D(AY(S)?)?(T)?", "DT")
-                                     .replaceAll("^P([^T]+)$", "PT$1")
-                                     .replaceAll("^P([^T]+)T$", "P$1T0M");
+    private static final BiFunction<Object, String, UUID> UUID_CONVERTER = (key, value) -> {
         try {
-            return Duration.parse(converted);
-        } catch (DateTimeParseException exception) {
-            throw new ConfigurationsException("Invalid duration \"" + what + "\" (" + converted + ")", exception);
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException exception) {
+            throw new ConfigurationsException("Invalid UUID " + value + " for key \"" + key + "\"", exception);
         }
-    }
+    };
+
+    private static final BiFunction<Object, String, Duration> DURATION_CONVERTER = (key, value) -> DurationParser.parse(value);
+
+    private static final BiFunction<Object, String, File> FILE_CONVERTER = (key, value) -> new File(value);
+
+    private static final BiFunction<Object, String, URL> URL_CONVERTER = (key, value) -> {
+        try {
+            return new URL(value);
+        } catch (MalformedURLException exception) {
+            throw new ConfigurationsException("Invalid URL " + value + " for key \"" + key + "\"", exception);
+        }
+    };
+
+    private static final BiFunction<Object, String, URI> URI_CONVERTER = (key, value) -> {
+        try {
+            return new URI(value);
+        } catch (URISyntaxException exception) {
+            throw new ConfigurationsException("Invalid URI " + value + " for key \"" + key + "\"", exception);
+        }
+    };
+
+    private static final BiFunction<Object, String, Integer> INTEGER_CONVERTER = (key, value) -> {
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException exception) {
+            throw new ConfigurationsException("Invalid int " + value + " for key \"" + key + "\"", exception);
+        }
+    };
+
+    private static final BiFunction<Object, String, Long> LONG_CONVERTER = (key, value) -> {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException exception) {
+            throw new ConfigurationsException("Invalid long " + value + " for key \"" + key + "\"", exception);
+        }
+    };
+
+    private static final BiFunction<Object, String, Double> DOUBLE_CONVERTER = (key, value) -> {
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException exception) {
+            throw new ConfigurationsException("Invalid double " + value + " for key \"" + key + "\"", exception);
+        }
+    };
+
+    private static final BiFunction<Object, String, Boolean> BOOLEAN_CONVERTER = (key, value) -> {
+        if ("true".equalsIgnoreCase(value)) return Boolean.TRUE;
+        if ("false".equalsIgnoreCase(value)) return Boolean.FALSE;
+        throw new ConfigurationsException("Invalid boolean " + value.toLowerCase() + " for key \"" + key + "\"");
+    };
 }
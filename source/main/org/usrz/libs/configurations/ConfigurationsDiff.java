@@ -0,0 +1,232 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The differences between two {@link Configurations} instances, as
+ * {@linkplain Configurations#diff(Configurations) computed} by comparing
+ * their sorted mappings in a single pass.
+ *
+ * <p>All key sets returned by instances of this class are sorted, and
+ * changes can be narrowed down to a <em>subtree</em> of keys by
+ * {@linkplain #strip(String) stripping} them, or
+ * {@linkplain #group(String) grouping} them by prefix, exactly as one would
+ * do with the {@link Configurations} they were computed from, so that only
+ * the components whose mappings actually changed need to be reconfigured.
+ * </p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+public final class ConfigurationsDiff {
+
+    /* An empty diff */
+    static final ConfigurationsDiff EMPTY = new ConfigurationsDiff(new String[0], new String[0], new String[0]);
+
+    /* Our keys, all sorted */
+    private final String[] added;
+    private final String[] removed;
+    private final String[] changed;
+
+    /* Create a new diff, the specified arrays must be sorted */
+    private ConfigurationsDiff(String[] added, String[] removed, String[] changed) {
+        this.added = added;
+        this.removed = removed;
+        this.changed = changed;
+    }
+
+    /* Create a new diff, the specified lists must be sorted */
+    ConfigurationsDiff(List<String> added, List<String> removed, List<String> changed) {
+        this(added.toArray(new String[added.size()]),
+             removed.toArray(new String[removed.size()]),
+             changed.toArray(new String[changed.size()]));
+    }
+
+    /* ====================================================================== */
+    /* KEYS                                                                   */
+    /* ====================================================================== */
+
+    /**
+     * Return the sorted {@link Set} of keys mapped only by the <em>new</em>
+     * {@link Configurations}.
+     */
+    public Set<String> getAdded() {
+        return new Keys(added);
+    }
+
+    /**
+     * Return the sorted {@link Set} of keys mapped only by the <em>old</em>
+     * {@link Configurations}.
+     */
+    public Set<String> getRemoved() {
+        return new Keys(removed);
+    }
+
+    /**
+     * Return the sorted {@link Set} of keys mapped by both
+     * {@link Configurations}, but to different values.
+     */
+    public Set<String> getChanged() {
+        return new Keys(changed);
+    }
+
+    /**
+     * Return the sorted {@link Set} of all keys either
+     * {@linkplain #getAdded() added}, {@linkplain #getRemoved() removed} or
+     * {@linkplain #getChanged() changed}.
+     */
+    public Set<String> getKeys() {
+        final String[] keys = new String[added.length + removed.length + changed.length];
+        System.arraycopy(added, 0, keys, 0, added.length);
+        System.arraycopy(removed, 0, keys, added.length, removed.length);
+        System.arraycopy(changed, 0, keys, added.length + removed.length, changed.length);
+        Arrays.sort(keys);
+        return new Keys(keys);
+    }
+
+    /**
+     * Returns <b>true</b> if no mappings were added, removed or changed.
+     */
+    public boolean isEmpty() {
+        return (added.length == 0) && (removed.length == 0) && (changed.length == 0);
+    }
+
+    /* ====================================================================== */
+    /* SUBTREES                                                               */
+    /* ====================================================================== */
+
+    /**
+     * Return the differences for the keys starting with the specified
+     * <em>prefix</em>, with the prefix stripped, as
+     * {@link Configurations#strip(String)} would do.
+     *
+     * <p>A change to the key equal to the prefix itself will be returned as
+     * a change to the <em>empty</em> key.</p>
+     */
+    public ConfigurationsDiff strip(String prefix) {
+        /* Check and normalize the prefix */
+        if (prefix == null) throw new NullPointerException("Null prefix");
+        while (prefix.endsWith(".")) prefix = prefix.substring(0, prefix.length() - 1);
+        if (prefix.length() == 0) return this;
+
+        final ConfigurationsDiff diff = new ConfigurationsDiff(strip(added, prefix),
+                                                               strip(removed, prefix),
+                                                               strip(changed, prefix));
+        return diff.isEmpty() ? EMPTY : diff;
+    }
+
+    /**
+     * Group the differences by prefix, as {@link Configurations#group(String)}
+     * would do, returning a {@link Map} of
+     * <code><em>group -&gt; {@link ConfigurationsDiff}</em></code> containing
+     * only the groups where something changed.
+     *
+     * <p>The <em>empty</em> prefix groups differences by the first segment
+     * of their keys.</p>
+     */
+    public Map<String, ConfigurationsDiff> group(String prefix) {
+        /* Check and normalize */
+        if (prefix == null) throw new NullPointerException("Null prefix");
+        if ((prefix.length() > 0) && !prefix.endsWith(".")) prefix += ".";
+
+        /* Find the names of our groups, in order */
+        final int length = prefix.length();
+        final Map<String, ConfigurationsDiff> grouped = new LinkedHashMap<>();
+        for (String key: getKeys()) {
+            if ((key.length() == 0) || !key.startsWith(prefix)) continue;
+            int position = key.indexOf('.', length);
+            if (position < 0) position = key.length();
+            grouped.put(key.substring(length, position), null);
+        }
+
+        /* Strip each one of them */
+        for (Map.Entry<String, ConfigurationsDiff> entry: grouped.entrySet()) {
+            entry.setValue(strip(prefix + entry.getKey()));
+        }
+
+        /* All done, return our map, made unmodifiable */
+        return Collections.unmodifiableMap(grouped);
+    }
+
+    /* Strip a prefix from a sorted array of keys, dropping those not matching */
+    private static String[] strip(String[] keys, String prefix) {
+        final List<String> stripped = new ArrayList<>();
+
+        /* The prefix itself becomes the empty key, and sorts first */
+        if (Arrays.binarySearch(keys, prefix) >= 0) stripped.add("");
+
+        /* Keys starting with "prefix." are all together */
+        final String prefixDot = prefix + ".";
+        int index = Arrays.binarySearch(keys, prefixDot);
+        if (index < 0) index = -index - 1;
+        for (; (index < keys.length) && keys[index].startsWith(prefixDot); index ++) {
+            stripped.add(keys[index].substring(prefixDot.length()));
+        }
+
+        return stripped.toArray(new String[stripped.size()]);
+    }
+
+    /* ====================================================================== */
+    /* OBJECT METHODS                                                         */
+    /* ====================================================================== */
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()
+                + "[added=" + Arrays.toString(added)
+                + ",removed=" + Arrays.toString(removed)
+                + ",changed=" + Arrays.toString(changed)
+                + "]";
+    }
+
+    /* ====================================================================== */
+    /* SORTED KEY SETS                                                        */
+    /* ====================================================================== */
+
+    /* An unmodifiable set over a sorted array of keys */
+    private static final class Keys extends AbstractSet<String> {
+
+        private final String[] keys;
+
+        private Keys(String[] keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            return (object instanceof String) && (Arrays.binarySearch(keys, object) >= 0);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return Collections.unmodifiableList(Arrays.asList(keys)).iterator();
+        }
+
+        @Override
+        public int size() {
+            return keys.length;
+        }
+    }
+}
@@ -15,10 +15,19 @@
  * ========================================================================== */
 package org.usrz.libs.configurations;
 
+import java.lang.StackWalker.Option;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 import org.usrz.libs.logging.Log;
 
@@ -42,6 +51,15 @@ import org.usrz.libs.logging.Log;
  *       super-classes</li>
  * </ol>
  *
+ * <p>Resources are looked up and parsed in parallel (in the
+ * {@linkplain ForkJoinPool#commonPool() common pool}), but mappings found
+ * in resources coming first in the order above always take precedence.</p>
+ *
+ * <p>The (immutable) mappings resolved for each {@link Class} are cached
+ * for the lifetime of the class itself, so that instances for the same class
+ * will never discover and parse its resources twice. Cache statistics are
+ * available from {@link #getCacheHits()} and {@link #getCacheMisses()}.</p>
+ *
  * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
  */
 public class DefaultConfigurations extends DelegateConfigurations {
@@ -60,6 +78,21 @@ public class DefaultConfigurations extends DelegateConfigurations {
 
     /* Our log */
     private static final Log log = new Log();
+    /* Our stack walker, to find out who called us */
+    private static final StackWalker WALKER = StackWalker.getInstance(Option.RETAIN_CLASS_REFERENCE);
+
+    /* Resolved configurations by class, weakly tied to the class (and its loader) */
+    private static final ClassValue<Configurations> CACHE = new ClassValue<Configurations>() {
+        @Override
+        protected Configurations computeValue(Class<?> clazz) {
+            MISSES.increment();
+            return resolve(clazz);
+        }
+    };
+
+    /* Cache statistics: lookups and misses */
+    private static final LongAdder LOOKUPS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
 
     /**
      * Create a new {@link ResourceConfigurations} instance parsing the
@@ -81,38 +114,77 @@ public class DefaultConfigurations extends DelegateConfigurations {
 
     /* ====================================================================== */
 
+    /**
+     * Return the number of times resolved mappings were found in our
+     * cache, rather than being discovered and parsed.
+     */
+    public static long getCacheHits() {
+        /* Read misses first, we never return a negative number */
+        final long misses = MISSES.sum();
+        return Math.max(0, LOOKUPS.sum() - misses);
+    }
+
+    /**
+     * Return the number of times mappings had to be discovered and parsed
+     * as they were not found in our cache.
+     */
+    public static long getCacheMisses() {
+        return MISSES.sum();
+    }
+
+    /* ====================================================================== */
+
     private static final Configurations load()
     throws ConfigurationsException {
-        final String className = new Throwable().getStackTrace()[2].getClassName();
-        try {
-            return load(Class.forName(className));
-        } catch (ClassNotFoundException exception) {
-            throw new IllegalStateException("Class \"" + className + "\" not found", exception);
-        }
+        /* Skip ourselves and our constructor, the next frame is our caller */
+        final Class<?> caller = WALKER.walk((frames) -> frames.skip(2).findFirst()).get().getDeclaringClass();
+        return load(caller);
     }
 
     private static final Configurations load(Class<?> clazz)
     throws ConfigurationsException {
         if (clazz == null) throw new NullPointerException("Null class");
+        LOOKUPS.increment();
+        return CACHE.get(clazz);
+    }
 
-        final List<URL> resources = new ArrayList<>();
-        discover(clazz, resources);
-
-        Configurations configurations = Configurations.EMPTY_CONFIGURATIONS;
-        for (URL resource: resources) {
-            configurations = configurations.merge(new URLConfigurations(resource));
+    private static final Configurations resolve(Class<?> clazz)
+    throws ConfigurationsException {
+        /* Discover all classes, in order, then look up their resources */
+        final Set<Class<?>> classes = new LinkedHashSet<>();
+        discover(clazz, classes);
+
+        final Set<URL> resources = classes.parallelStream()
+                                          .map(DefaultConfigurations::resource)
+                                          .filter(Objects::nonNull)
+                                          .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        /* Parse our resources, in parallel if more than one */
+        final List<Configurations> layers = new ArrayList<>(resources.size());
+        if (resources.size() == 1) {
+            layers.add(new URLConfigurations(resources.iterator().next()));
+        } else {
+            final List<CompletableFuture<Configurations>> futures = new ArrayList<>(resources.size());
+            for (URL resource: resources) {
+                futures.add(CompletableFuture.supplyAsync(() -> new URLConfigurations(resource), ForkJoinPool.commonPool()));
+            }
+            try {
+                for (CompletableFuture<Configurations> future: futures) layers.add(future.join());
+            } catch (CompletionException exception) {
+                final Throwable cause = exception.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw exception;
+            }
         }
 
-        return configurations;
+        /* The first resource discovered has the highest priority */
+        return new LayeredConfigurations(layers);
     }
 
-    private static final void discover(Class<?> clazz, List<URL> discovered) {
-
-        final URL resource = clazz.getResource(DEFAULTS_PROPERTIES);
-
-        log.trace("Defaults for class \"%s\" %s", clazz, resource == null ? "do not exist" : "DO EXIST!");
-
-        if ((resource != null) && (!discovered.contains(resource))) discovered.add(resource);
+    private static final void discover(Class<?> clazz, Set<Class<?>> discovered) {
+        /* Already seen, and so were its super-classes and interfaces */
+        if (!discovered.add(clazz)) return;
 
         if (clazz.getSuperclass() != null)
             discover(clazz.getSuperclass(), discovered);
@@ -121,4 +193,12 @@ public class DefaultConfigurations extends DelegateConfigurations {
             discover(interfaceClass, discovered);
         }
     }
+
+    private static final URL resource(Class<?> clazz) {
+        final URL resource = clazz.getResource(DEFAULTS_PROPERTIES);
+
+        log.trace("Defaults for class \"%s\" %s", clazz, resource == null ? "do not exist" : "DO EXIST!");
+
+        return resource;
+    }
 }
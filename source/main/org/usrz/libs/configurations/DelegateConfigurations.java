@@ -15,6 +15,7 @@
  * ========================================================================== */
 package org.usrz.libs.configurations;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -47,14 +48,39 @@ public class DelegateConfigurations extends Configurations {
         return configurations.getPassword(key);
     }
 
+    @Override
+    public Set<String> keySet() {
+        return configurations.keySet();
+    }
+
+    @Override
+    public Collection<String> values() {
+        return configurations.values();
+    }
+
     @Override
     public Set<Entry<String, String>> entrySet() {
         return configurations.entrySet();
     }
 
+    @Override
+    Collection<Entry<String, String>> entries(String start) {
+        return configurations.entries(start);
+    }
+
     @Override
     public int size() {
         return configurations.size();
     }
 
+    @Override
+    int hash() {
+        return configurations.hash();
+    }
+
+    @Override
+    long fingerprint() {
+        return configurations.fingerprint();
+    }
+
 }
@@ -0,0 +1,222 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.time.Duration;
+
+/**
+ * A single-pass parser for {@link Duration}s.
+ *
+ * <p>This parser understands both the <em>ISO-8601</em> format (as in
+ * <code>P2DT3H4M5.6S</code>) and a more human-friendly one (as in
+ * <code>2 days 3 hours 4 minutes 5.6 seconds</code>, or <code>2d 3h</code>),
+ * where units can be spelled out as:</p>
+ *
+ * <ul>
+ *   <li><em>days</em>: <code>d</code>, <code>day</code> or <code>days</code></li>
+ *   <li><em>hours</em>: <code>h</code>, <code>hr</code>, <code>hrs</code>,
+ *       <code>hour</code> or <code>hours</code></li>
+ *   <li><em>minutes</em>: <code>m</code>, <code>min</code>, <code>mins</code>,
+ *       <code>minute</code> or <code>minutes</code></li>
+ *   <li><em>seconds</em>: <code>s</code>, <code>sec</code>, <code>secs</code>,
+ *       <code>second</code> or <code>seconds</code></li>
+ * </ul>
+ *
+ * <p>Units are case-insensitive, and must appear in the order above. Each
+ * value can be signed, and only seconds can have a fractional part.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+final class DurationParser {
+
+    /* Our units, in order */
+    private static final int NONE = 0;
+    private static final int DAYS = 1;
+    private static final int HOURS = 2;
+    private static final int MINUTES = 3;
+    private static final int SECONDS = 4;
+
+    /* Seconds in each unit */
+    private static final long[] MULTIPLIERS = { 0, 86400, 3600, 60, 1 };
+
+    /* The string being parsed and our position in it */
+    private final String string;
+    private final int length;
+    private int position = 0;
+
+    private DurationParser(String string) {
+        this.string = string;
+        length = string.length();
+    }
+
+    /* ====================================================================== */
+
+    /**
+     * Parse the specified {@link String} as a {@link Duration}.
+     */
+    static Duration parse(String string)
+    throws ConfigurationsException {
+        if (string == null) throw new NullPointerException("Null duration");
+        final Duration duration = new DurationParser(string).parse();
+        if (duration != null) return duration;
+        throw new ConfigurationsException("Invalid duration \"" + string + "\"");
+    }
+
+    /* ====================================================================== */
+
+    /* Parse our duration, returning null on errors */
+    private Duration parse() {
+        /* An optional ISO "P", followed by an optional "T" */
+        skipWhitespace();
+        if ((position < length) && (Character.toUpperCase(string.charAt(position)) == 'P')) {
+            position ++;
+            skipWhitespace();
+        }
+        if ((position < length) && (Character.toUpperCase(string.charAt(position)) == 'T')) {
+            position ++;
+        }
+
+        long seconds = 0;
+        long nanos = 0;
+        int last = NONE;
+
+        try {
+            while (true) {
+                skipWhitespace();
+                if (position == length) break;
+
+                /* An ISO "T" separator is allowed only after days */
+                if ((last == DAYS) && (Character.toUpperCase(string.charAt(position)) == 'T')) {
+                    position ++;
+                    continue;
+                }
+
+                /* The sign of our number */
+                boolean negative = false;
+                char c = string.charAt(position);
+                if ((c == '-') || (c == '+')) {
+                    negative = c == '-';
+                    if (++ position == length) return null;
+                }
+
+                /* The integer part of our number */
+                long value = 0;
+                final int start = position;
+                while ((position < length) && isDigit(c = string.charAt(position))) {
+                    value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+                    position ++;
+                }
+                if (position == start) return null;
+
+                /* The fractional part of our number (in nanoseconds) */
+                long fraction = 0;
+                boolean fractional = false;
+                if ((position < length) && ((c == '.') || (c == ','))) {
+                    fractional = true;
+                    position ++;
+                    int digits = 0;
+                    while ((position < length) && isDigit(c = string.charAt(position))) {
+                        if (digits ++ < 9) fraction = fraction * 10 + (c - '0');
+                        position ++;
+                    }
+                    if (digits > 9) return null;
+                    for (int x = digits; x < 9; x ++) fraction *= 10;
+                }
+
+                /* The unit, strictly following the previous one */
+                skipWhitespace();
+                final int unit = unit();
+                if ((unit <= last) || (fractional && (unit != SECONDS))) return null;
+                last = unit;
+
+                /* Add up what we have */
+                final long amount = Math.multiplyExact(value, MULTIPLIERS[unit]);
+                seconds = Math.addExact(seconds, negative ? -amount : amount);
+                nanos += negative ? -fraction : fraction;
+            }
+        } catch (ArithmeticException exception) {
+            return null;
+        }
+
+        /* We need at least one value with a unit */
+        return last == NONE ? null : Duration.ofSeconds(seconds, nanos);
+    }
+
+    /* ====================================================================== */
+
+    /* Parse a unit name, returning its constant, or NONE */
+    private int unit() {
+        final int start = position;
+        while ((position < length) && isLetter(string.charAt(position))) position ++;
+        final int end = position;
+
+        switch (end - start) {
+            case 1:
+                if (matches(start, "D")) return DAYS;
+                if (matches(start, "H")) return HOURS;
+                if (matches(start, "M")) return MINUTES;
+                if (matches(start, "S")) return SECONDS;
+                return NONE;
+            case 2:
+                if (matches(start, "DT")) return DAYS; // as in ISO "P2DT3H"
+                if (matches(start, "HR")) return HOURS;
+                return NONE;
+            case 3:
+                if (matches(start, "DAY")) return DAYS;
+                if (matches(start, "HRS")) return HOURS;
+                if (matches(start, "MIN")) return MINUTES;
+                if (matches(start, "SEC")) return SECONDS;
+                return NONE;
+            case 4:
+                if (matches(start, "DAYS")) return DAYS;
+                if (matches(start, "DAYT")) return DAYS;
+                if (matches(start, "HOUR")) return HOURS;
+                if (matches(start, "MINS")) return MINUTES;
+                if (matches(start, "SECS")) return SECONDS;
+                return NONE;
+            case 5:
+                if (matches(start, "DAYST")) return DAYS;
+                if (matches(start, "HOURS")) return HOURS;
+                return NONE;
+            case 6:
+                if (matches(start, "MINUTE")) return MINUTES;
+                if (matches(start, "SECOND")) return SECONDS;
+                return NONE;
+            case 7:
+                if (matches(start, "MINUTES")) return MINUTES;
+                if (matches(start, "SECONDS")) return SECONDS;
+                return NONE;
+            default:
+                return NONE;
+        }
+    }
+
+    private boolean matches(int start, String unit) {
+        return string.regionMatches(true, start, unit, 0, unit.length());
+    }
+
+    private void skipWhitespace() {
+        while ((position < length) && Character.isWhitespace(string.charAt(position))) position ++;
+    }
+
+    private static boolean isDigit(char c) {
+        return (c >= '0') && (c <= '9');
+    }
+
+    private static boolean isLetter(char c) {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'));
+    }
+}
@@ -16,9 +16,12 @@
 package org.usrz.libs.configurations;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Properties;
+import java.util.function.Predicate;
 
 import org.usrz.libs.logging.Log;
 
@@ -43,14 +46,27 @@ public class FileConfigurations extends DelegateConfigurations {
      */
     public FileConfigurations(File file)
     throws ConfigurationsException {
-        super(load(file));
+        this(file, (key) -> false);
+    }
+
+    /**
+     * Create a new {@link Configurations} instance parsing the specified
+     * {@link File}, either in <em>Java {@linkplain Properties properties}</em>
+     * or <em><a href="http://json.org/">JSON</a></em> format, storing the
+     * values of the keys matching the specified {@link Predicate} as
+     * {@link Password}s.
+     */
+    public FileConfigurations(File file, Predicate<String> secrets)
+    throws ConfigurationsException {
+        super(load(file, secrets));
     }
 
     /* ====================================================================== */
 
-    private static final Configurations load(File file)
+    private static final Configurations load(File file, Predicate<String> secrets)
     throws ConfigurationsException {
         if (file == null) throw new NullPointerException("Null URL");
+        if (secrets == null) throw new NullPointerException("Null secrets");
 
         log.debug("Parsing configurations from file %s", file);
 
@@ -59,17 +75,18 @@ public class FileConfigurations extends DelegateConfigurations {
             throw new IllegalArgumentException("File " + name + " not found (or not a file)");
 
         try {
-            final FileInputStream input = new FileInputStream(file);
-            try {
+            /* Properties files are memory mapped */
+            if (name.endsWith(".properties")) return new PropertiesConfigurations(file, secrets);
+
+            /* Anything else is decoded incrementally from its channel */
+            try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
                 if (name.endsWith(".json") || name.endsWith(".js"))
-                    return new JsonConfigurations(input);
-                else if (name.endsWith(".properties") || name.endsWith(".xml")) {
-                    return new PropertiesConfigurations(input);
+                    return new JsonConfigurations(channel, secrets);
+                else if (name.endsWith(".xml")) {
+                    return new PropertiesConfigurations(channel, secrets);
                 } else {
                     throw new IllegalArgumentException("Invalid file extension for \"" + name + "\"");
                 }
-            } finally {
-                input.close();
             }
         } catch (IOException exception) {
             throw new ConfigurationsException("I/O error reading file " + file, exception);
@@ -78,4 +95,19 @@ public class FileConfigurations extends DelegateConfigurations {
         }
     }
 
+    /**
+     * Parse the contents of a file, already read into the specified
+     * <code>byte[]</code>, choosing a format from the file's extension.
+     */
+    static final Configurations parse(String name, byte[] bytes)
+    throws IOException, ConfigurationsException {
+        if (name.endsWith(".json") || name.endsWith(".js")) {
+            return new JsonConfigurations(ByteBuffer.wrap(bytes));
+        } else if (name.endsWith(".properties") || name.endsWith(".xml")) {
+            return new PropertiesConfigurations(ByteBuffer.wrap(bytes));
+        } else {
+            throw new IllegalArgumentException("Invalid file extension for \"" + name + "\"");
+        }
+    }
+
 }
@@ -19,25 +19,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
-import java.util.HashMap;
 import java.util.Map;
-
-import javax.script.ScriptContext;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
+import java.util.function.Predicate;
 
 /**
  * A {@link Configurations} implementation reading <em>key-value</em> mappings
  * from <em><a href="http://json.org/">JSON</a>-like file</em>.
  *
+ * <p>When constructed with a {@link Predicate} identifying <em>secret</em>
+ * keys, the values of those keys are never turned into {@link String}s, and
+ * will only be available from {@link #getPassword(Object)}.</p>
+ *
  * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
  */
 public class JsonConfigurations extends MappedConfigurations {
 
-    /* Platform-dependant line separator to wrap our JSON */
-    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
     /* Our charset, UTF8, always */
     private static final Charset UTF8 = Charset.forName("UTF8");
 
@@ -52,7 +51,7 @@ public class JsonConfigurations extends MappedConfigurations {
      */
     public JsonConfigurations(Reader reader)
     throws IOException, ConfigurationsException {
-        super(parse(reader));
+        this(reader, (key) -> false);
     }
 
     /**
@@ -62,78 +61,115 @@ public class JsonConfigurations extends MappedConfigurations {
      */
     public JsonConfigurations(InputStream input)
     throws IOException, ConfigurationsException {
-        super(parse(input));
+        this(input, (key) -> false);
     }
 
-    /* ====================================================================== */
+    /**
+     * Create a new {@link JsonConfigurations} instance parsing a
+     * <em><a href="http://json.org/">JSON</a>-like file</em> contained in the
+     * specified {@link ByteBuffer}, from its position to its limit.
+     *
+     * <p>Characters are decoded straight from the buffer, whose position
+     * will not be changed, without intermediate copies.</p>
+     */
+    public JsonConfigurations(ByteBuffer buffer)
+    throws ConfigurationsException {
+        this(buffer, (key) -> false);
+    }
 
-    private static final Map<String, Object> parse(InputStream input)
+    /**
+     * Create a new {@link JsonConfigurations} instance reading a
+     * <em><a href="http://json.org/">JSON</a>-like file</em> from the
+     * specified {@link ReadableByteChannel}.
+     *
+     * <p>The channel will be read up to its end, decoding its bytes
+     * incrementally, but will not be closed. Non-blocking
+     * {@linkplain java.nio.channels.SelectableChannel selectable channels}
+     * are not supported, and will be rejected with an
+     * {@link java.nio.channels.IllegalBlockingModeException}.</p>
+     */
+    public JsonConfigurations(ReadableByteChannel channel)
     throws IOException, ConfigurationsException {
-        if (input == null) throw new NullPointerException("Null input stream");
-        return parse(new InputStreamReader(input, UTF8));
+        this(channel, (key) -> false);
     }
 
-    @SuppressWarnings("unchecked")
-    private static final Map<String, Object> parse(Reader reader)
+    /**
+     * Create a new {@link JsonConfigurations} instance reading a
+     * <em><a href="http://json.org/">JSON</a>-like file</em> from the
+     * specified {@link Reader}, storing the values of the keys matching the
+     * specified {@link Predicate} as {@link Password}s.
+     */
+    public JsonConfigurations(Reader reader, Predicate<String> secrets)
     throws IOException, ConfigurationsException {
-        if (reader == null) throw new NullPointerException("Null reader");
-
-        /* Read our JSON fully, wrapping it in a { json } structure */
-        final StringBuilder builder = new StringBuilder("callback.invoke(").append(LINE_SEPARATOR);
-
-        final char[] buffer = new char[4096];
-        int read = -1;
-        while ((read = reader.read(buffer)) >= 0) {
-            if (read > 0) builder.append(buffer, 0, read);
-        }
+        super(parse(reader, secrets));
+    }
 
-        builder.append(");");
+    /**
+     * Create a new {@link JsonConfigurations} instance reading a
+     * <em><a href="http://json.org/">JSON</a>-like file</em> from the
+     * specified {@link InputStream}, storing the values of the keys matching
+     * the specified {@link Predicate} as {@link Password}s.
+     */
+    public JsonConfigurations(InputStream input, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        super(parse(input, secrets));
+    }
 
-        /* We can use the built-in JavaScript interpreter to parse this JSON */
-        try {
-            final ScriptEngineManager manager = new ScriptEngineManager();
-            final ScriptEngine engine = manager.getEngineByMimeType("application/javascript");
+    /**
+     * Create a new {@link JsonConfigurations} instance parsing a
+     * <em><a href="http://json.org/">JSON</a>-like file</em> contained in the
+     * specified {@link ByteBuffer}, storing the values of the keys matching
+     * the specified {@link Predicate} as {@link Password}s.
+     */
+    public JsonConfigurations(ByteBuffer buffer, Predicate<String> secrets)
+    throws ConfigurationsException {
+        super(parse(buffer, secrets));
+    }
 
-            engine.getContext().setAttribute("callback", Callback.CALLBACK, ScriptContext.ENGINE_SCOPE);
+    /**
+     * Create a new {@link JsonConfigurations} instance reading a
+     * <em><a href="http://json.org/">JSON</a>-like file</em> from the
+     * specified {@link ReadableByteChannel}, storing the values of the keys
+     * matching the specified {@link Predicate} as {@link Password}s.
+     */
+    public JsonConfigurations(ReadableByteChannel channel, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        super(parse(channel, secrets));
+    }
 
-            return (Map<String, Object>) engine.eval(builder.toString());
+    /* ====================================================================== */
 
-        } catch (RuntimeException exception) {
-            final Throwable cause = exception.getCause();
-            if (cause instanceof ConfigurationsException)
-                throw (ConfigurationsException) cause;
-            throw exception;
+    private static final Map<String, Object> parse(InputStream input, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        if (input == null) throw new NullPointerException("Null input stream");
+        return parse(new InputStreamReader(input, UTF8), secrets);
+    }
 
-        } catch (ScriptException exception) {
-            /* Wrap a JsonParseException in a ConfigurationsException */
-            throw new ConfigurationsException("Unable to parse JSON format", exception);
+    private static final Map<String, Object> parse(ByteBuffer buffer, Predicate<String> secrets)
+    throws ConfigurationsException {
+        if (buffer == null) throw new NullPointerException("Null buffer");
+        try {
+            return JsonParser.parse(new Utf8Reader(buffer), secrets);
+        } catch (IOException exception) {
+            /* Buffers are never refilled, this should never happen */
+            throw new IllegalStateException("I/O error parsing buffer", exception);
         }
     }
 
-    /* ====================================================================== */
-    /* CALLED BY JAVASCRIPT TO BUILD OUR CONFIGURATIONS INSTANCE              */
-    /* ====================================================================== */
-
-    public static class Callback {
-
-        private static final Callback CALLBACK = new Callback();
+    private static final Map<String, Object> parse(ReadableByteChannel channel, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        if (channel == null) throw new NullPointerException("Null channel");
 
-        public Map<String, Object> invoke(Map<?, ?> map) {
-            return build(map, new HashMap<>(), "");
+        /* Our reader's buffer might hold secrets, wipe it when done */
+        try (final Utf8Reader reader = new Utf8Reader(channel)) {
+            return JsonParser.parse(reader, secrets);
         }
+    }
 
-        private Map<String, Object> build(Map<?, ?> from, Map<String, Object> to, String prefix) {
-            for (Object object: from.keySet()) {
-                final String key = prefix + object.toString();
-                final Object value = from.get(object);
-                if (value instanceof Map) {
-                    build((Map<?, ?>) value, to, key + ".");
-                } else {
-                    to.put(key, value);
-                }
-            }
-            return to;
-        }
+    private static final Map<String, Object> parse(Reader reader, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        if (reader == null) throw new NullPointerException("Null reader");
+        return JsonParser.parse(reader, secrets);
     }
 
 }
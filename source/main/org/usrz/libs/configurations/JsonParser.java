@@ -0,0 +1,462 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A simple <em>pull</em> parser for <em><a href="http://json.org/">JSON</a>-like
+ * files</em>, flattening nested objects and arrays into a {@link Map} keyed
+ * by <em>dotted</em> names.
+ *
+ * <p>Other than strict JSON, this parser accepts what a JavaScript object
+ * literal would: unquoted (identifier) keys, single-quoted strings, trailing
+ * commas and comments.</p>
+ *
+ * <p>Given a document like <code>{ a: { b: 1, c: [ "x", "y" ] } }</code>
+ * this parser will return the mappings <code>a.b = 1</code>,
+ * <code>a.c.0 = x</code> and <code>a.c.1 = y</code>.</p>
+ *
+ * <p>String and number values for <em>secret</em> keys are never turned
+ * into {@link String}s, but stored in the returned {@link Map} as
+ * {@link Password}s, and the parser's own buffers are wiped after use.</p>
+ *
+ * <p>Read buffers are wiped and kept around per thread, so that parsing
+ * a number of small documents doesn't allocate (and clear) a new one each
+ * time.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+final class JsonParser {
+
+    /* Wiped read buffers, one per thread, not there while in use */
+    private static final ThreadLocal<char[]> BUFFERS = new ThreadLocal<>();
+
+    /* The reader we parse from, and the keys whose values are secret */
+    private final Reader reader;
+    private final Predicate<String> secrets;
+    /* Our read buffer, position, limit and the highest limit to wipe */
+    private final char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private int used = 0;
+    /* A builder for strings and numbers */
+    private final StringBuilder builder = new StringBuilder();
+    /* Current line and column, for error reporting */
+    private int line = 1;
+    private int column = 1;
+
+    private JsonParser(Reader reader, Predicate<String> secrets, char[] buffer) {
+        this.reader = reader;
+        this.secrets = secrets;
+        this.buffer = buffer;
+    }
+
+    /* ====================================================================== */
+
+    /**
+     * Parse the <em>JSON</em> document from the specified {@link Reader} and
+     * return its flattened <em>key-value</em> mappings.
+     */
+    static Map<String, Object> parse(Reader reader)
+    throws IOException, ConfigurationsException {
+        return parse(reader, (key) -> false);
+    }
+
+    /**
+     * Parse the <em>JSON</em> document from the specified {@link Reader} and
+     * return its flattened <em>key-value</em> mappings, with values for keys
+     * matching the specified {@link Predicate} stored as {@link Password}s.
+     */
+    static Map<String, Object> parse(Reader reader, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        if (reader == null) throw new NullPointerException("Null reader");
+        if (secrets == null) throw new NullPointerException("Null secrets");
+
+        /* Borrow this thread's buffer, secrets might be parsing, too */
+        final char[] buffer = BUFFERS.get();
+        if (buffer != null) BUFFERS.set(null);
+
+        final JsonParser parser = new JsonParser(reader, secrets, buffer == null ? new char[4096] : buffer);
+        final Map<String, Object> map = new HashMap<>();
+
+        try {
+            /* The top level value *must* be an object */
+            if (parser.skip() != '{') throw parser.unexpected();
+            parser.object(map, "");
+
+            /* Nothing but whitespace and comments after it */
+            if (parser.skip() >= 0) throw parser.unexpected();
+            return map;
+        } finally {
+            /* Our buffer might have held secrets, wipe it before returning it */
+            Arrays.fill(parser.buffer, 0, parser.used, '\0');
+            BUFFERS.set(parser.buffer);
+        }
+    }
+
+    /* The (wiped) buffer kept around for this thread, if any, for tests */
+    static char[] pooled() {
+        return BUFFERS.get();
+    }
+
+    /* ====================================================================== */
+    /* STRUCTURES                                                             */
+    /* ====================================================================== */
+
+    private void value(Map<String, Object> map, String key)
+    throws IOException, ConfigurationsException {
+        final int c = skip();
+
+        /* Secret strings or numbers, never as strings */
+        final boolean secret = secrets.test(key);
+        if (secret) {
+            if ((c == '"') || (c == '\'')) {
+                map.put(key, secret(true));
+                return;
+            } else if ((c == '-') || (c == '+') || (c == '.') || ((c >= '0') && (c <= '9'))) {
+                map.put(key, secret(false));
+                return;
+            }
+        }
+
+        switch (c) {
+            case '{':  object(map, key + "."); break;
+            case '[':  array(map, key + "."); break;
+            case '"':
+            case '\'': map.put(key, string()); break;
+            default:
+                if ((c == '-') || (c == '+') || (c == '.') || ((c >= '0') && (c <= '9'))) {
+                    map.put(key, number());
+                } else if (isIdentifier(c)) {
+                    final String literal = identifier();
+                    switch (literal) {
+                        case "true":  map.put(key, Boolean.TRUE); break;
+                        case "false": map.put(key, Boolean.FALSE); break;
+                        case "null":  map.put(key, null); break;
+                        default: throw error(secret ? "Unexpected literal for secret" : "Unexpected literal \"" + literal + "\"");
+                    }
+                } else {
+                    throw unexpected();
+                }
+        }
+    }
+
+    private void object(Map<String, Object> map, String prefix)
+    throws IOException, ConfigurationsException {
+        read(); // the opening '{'
+        while (true) {
+            int c = skip();
+            if (c == '}') break;
+
+            /* Our key, quoted, identifier or number */
+            final String name;
+            if ((c == '"') || (c == '\'')) name = string();
+            else if (isIdentifier(c)) name = identifier();
+            else throw unexpected();
+
+            /* The colon separating key and value */
+            if (skip() != ':') throw unexpected();
+            read();
+
+            /* Our value, then a comma or the closing brace */
+            value(map, prefix + name);
+            c = skip();
+            if (c == ',') read();
+            else if (c != '}') throw unexpected();
+        }
+        read(); // the closing '}'
+    }
+
+    private void array(Map<String, Object> map, String prefix)
+    throws IOException, ConfigurationsException {
+        read(); // the opening '['
+        int index = 0;
+        while (true) {
+            int c = skip();
+            if (c == ']') break;
+
+            /* Our value, then a comma or the closing bracket */
+            value(map, prefix + (index ++));
+            c = skip();
+            if (c == ',') read();
+            else if (c != ']') throw unexpected();
+        }
+        read(); // the closing ']'
+    }
+
+    /* ====================================================================== */
+    /* TOKENS                                                                 */
+    /* ====================================================================== */
+
+    private String string()
+    throws IOException, ConfigurationsException {
+        stringToBuilder();
+        return builder.toString();
+    }
+
+    /* Read a secret string or (validated) number verbatim as a password, or null if empty */
+    private Password secret(boolean string)
+    throws IOException, ConfigurationsException {
+        try {
+            if (string) {
+                stringToBuilder();
+            } else {
+                /* Validated as any other number, but never echoed back */
+                numberToBuilder();
+                if (!isNumber(builder)) throw error("Invalid number for secret");
+            }
+
+            /* Trim as String.trim() would do */
+            int start = 0;
+            int end = builder.length();
+            while ((start < end) && (builder.charAt(start) <= ' ')) start ++;
+            while ((end > start) && (builder.charAt(end - 1) <= ' ')) end --;
+            if (start == end) return null;
+
+            /* The password will wipe our characters */
+            final char[] chars = new char[end - start];
+            builder.getChars(start, end, chars, 0);
+            return new Password(chars);
+        } finally {
+            for (int x = 0; x < builder.length(); x ++) builder.setCharAt(x, '\0');
+            builder.setLength(0);
+        }
+    }
+
+    /* Read a quoted string into our builder */
+    private void stringToBuilder()
+    throws IOException, ConfigurationsException {
+        final int quote = read();
+        builder.setLength(0);
+        while (true) {
+            final int c = read();
+            if (c == quote) return;
+            if ((c < 0) || (c == '\n') || (c == '\r')) throw error("Unterminated string");
+            if (c != '\\') {
+                builder.append((char) c);
+                continue;
+            }
+
+            /* Escape sequences */
+            final int e = read();
+            switch (e) {
+                case 'b': builder.append('\b'); break;
+                case 'f': builder.append('\f'); break;
+                case 'n': builder.append('\n'); break;
+                case 'r': builder.append('\r'); break;
+                case 't': builder.append('\t'); break;
+                case 'u': builder.append(unicode()); break;
+                case -1:  throw error("Unterminated string");
+                default:  builder.append((char) e); // \" \' \\ \/ ...
+            }
+        }
+    }
+
+    private char unicode()
+    throws IOException, ConfigurationsException {
+        int value = 0;
+        for (int x = 0; x < 4; x ++) {
+            final int digit = Character.digit(read(), 16);
+            if (digit < 0) throw error("Invalid unicode escape");
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    private String number()
+    throws IOException, ConfigurationsException {
+        numberToBuilder();
+        final String number = builder.toString();
+        if (!isNumber(builder)) throw error("Invalid number \"" + number + "\"");
+
+        /* Hexadecimal numbers, like JavaScript, are converted to decimal */
+        final boolean signed = (number.charAt(0) == '-') || (number.charAt(0) == '+');
+        final int start = signed ? 1 : 0;
+        if ((number.length() > start + 1) && ((number.charAt(start + 1) == 'x') || (number.charAt(start + 1) == 'X'))) {
+            try {
+                final long value = Long.parseLong(number.substring(start + 2), 16);
+                return Long.toString(number.charAt(0) == '-' ? -value : value);
+            } catch (NumberFormatException exception) {
+                throw error("Invalid number \"" + number + "\"");
+            }
+        }
+
+        /* Strip the redundant "+" sign, if any */
+        return number.charAt(0) == '+' ? number.substring(1) : number;
+    }
+
+    /* Read the characters of a number (not validated) into our builder */
+    private void numberToBuilder()
+    throws IOException {
+        builder.setLength(0);
+        int c = peek();
+        while ((c >= 0) && (isIdentifier(c) || (c == '.') || (c == '-') || (c == '+'))) {
+            builder.append((char) read());
+            c = peek();
+        }
+    }
+
+    /*
+     * Validate a number: decimal, with optional fraction and exponent, or
+     * hexadecimal, optionally signed. Java-only forms ("1d", "2f", "NaN" or
+     * "Infinity") are not numbers for JavaScript, so we reject them.
+     */
+    private static boolean isNumber(CharSequence number) {
+        final int length = number.length();
+        int x = 0;
+        if ((x < length) && ((number.charAt(x) == '-') || (number.charAt(x) == '+'))) x ++;
+
+        /* Hexadecimal, "0x" followed by at least one digit */
+        if ((x + 2 < length) && (number.charAt(x) == '0') && ((number.charAt(x + 1) == 'x') || (number.charAt(x + 1) == 'X'))) {
+            for (x += 2; x < length; x ++) {
+                final char c = number.charAt(x);
+                if (!(isDigit(c) || ((c >= 'a') && (c <= 'f')) || ((c >= 'A') && (c <= 'F')))) return false;
+            }
+            return true;
+        }
+
+        /* Integer and fraction digits, at least one of them */
+        int digits = 0;
+        while ((x < length) && isDigit(number.charAt(x))) { x ++; digits ++; }
+        if ((x < length) && (number.charAt(x) == '.')) {
+            x ++;
+            while ((x < length) && isDigit(number.charAt(x))) { x ++; digits ++; }
+        }
+        if (digits == 0) return false;
+
+        /* The exponent, with at least one digit */
+        if ((x < length) && ((number.charAt(x) == 'e') || (number.charAt(x) == 'E'))) {
+            x ++;
+            if ((x < length) && ((number.charAt(x) == '-') || (number.charAt(x) == '+'))) x ++;
+            final int exponent = x;
+            while ((x < length) && isDigit(number.charAt(x))) x ++;
+            if (x == exponent) return false;
+        }
+
+        return x == length;
+    }
+
+    private static boolean isDigit(char c) {
+        return (c >= '0') && (c <= '9');
+    }
+
+    private String identifier()
+    throws IOException {
+        builder.setLength(0);
+        int c = peek();
+        while ((c >= 0) && isIdentifier(c)) {
+            builder.append((char) read());
+            c = peek();
+        }
+        return builder.toString();
+    }
+
+    private static boolean isIdentifier(int c) {
+        return Character.isJavaIdentifierPart(c) && (c != 0);
+    }
+
+    /* ====================================================================== */
+    /* CHARACTERS                                                             */
+    /* ====================================================================== */
+
+    /* Skip whitespace and comments, returning the next character */
+    private int skip()
+    throws IOException, ConfigurationsException {
+        while (true) {
+            final int c = peek();
+            if (c < 0) return c;
+            if (Character.isWhitespace(c) || (c == '\uFEFF')) {
+                read();
+            } else if (c == '/') {
+                read();
+                final int next = read();
+                if (next == '/') {
+                    /* Single line comment, up to end of line */
+                    int x = peek();
+                    while ((x >= 0) && (x != '\n') && (x != '\r')) {
+                        read();
+                        x = peek();
+                    }
+                } else if (next == '*') {
+                    /* Multi line comment, up to the closing star-slash */
+                    int previous = -1;
+                    int x = read();
+                    while (!((previous == '*') && (x == '/'))) {
+                        if (x < 0) throw error("Unterminated comment");
+                        previous = x;
+                        x = read();
+                    }
+                } else {
+                    throw error("Unexpected character '/'");
+                }
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private int peek()
+    throws IOException {
+        if (position < limit) return buffer[position];
+
+        /* Refill our buffer */
+        int read = 0;
+        while (read == 0) read = reader.read(buffer, 0, buffer.length);
+        if (read < 0) return -1;
+
+        position = 0;
+        limit = read;
+        if (used < read) used = read;
+        return buffer[0];
+    }
+
+    private int read()
+    throws IOException {
+        final int c = peek();
+        if (c < 0) return c;
+        position ++;
+
+        /* Keep track of where we are */
+        if (c == '\n') {
+            line ++;
+            column = 1;
+        } else {
+            column ++;
+        }
+        return c;
+    }
+
+    /* ====================================================================== */
+    /* ERRORS                                                                 */
+    /* ====================================================================== */
+
+    private ConfigurationsException unexpected()
+    throws IOException {
+        final int c = peek();
+        return error(c < 0 ? "Unexpected end of JSON" : "Unexpected character '" + (char) c + "'");
+    }
+
+    private ConfigurationsException error(String message) {
+        return new ConfigurationsException(message + " at line " + line + ", column " + column);
+    }
+
+}
@@ -0,0 +1,196 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link Configurations} implementation <em>layering</em> a number of
+ * other {@link Configurations} instances on top of each other.
+ *
+ * <p>Lookups probe each layer in order, from the <em>top</em> (the first
+ * one specified at construction) to the <em>bottom</em> (the last one), and
+ * the first mapping found wins, even when it is a {@link Password} hiding
+ * plain values for the same key in lower layers. Layers are never copied:
+ * mappings are <em>flattened</em> lazily, and only once, when iterating
+ * over them (as in {@link #entrySet()}) or when computing this instance's
+ * {@link #size()}.</p>
+ *
+ * <p>Layers are taken as {@linkplain Configurations#snapshot() snapshots}
+ * at construction, and the layers of nested {@link LayeredConfigurations}
+ * are spliced in place, so that lookups never traverse more than one level.
+ * </p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ * @see Configurations#merge(Map)
+ * @see Configurations#override(Map)
+ */
+public class LayeredConfigurations extends Configurations {
+
+    /* Our layers, top to bottom */
+    private final Configurations[] layers;
+    /* Our flattened mappings, lazily computed */
+    private volatile Configurations flattened;
+
+    /* ====================================================================== */
+    /* CONSTRUCTION                                                           */
+    /* ====================================================================== */
+
+    /**
+     * Create a new {@link LayeredConfigurations} instance from the specified
+     * {@link Configurations}, the first one being the <em>top</em> layer.
+     */
+    public LayeredConfigurations(Configurations... layers) {
+        this(Arrays.asList(layers));
+    }
+
+    /**
+     * Create a new {@link LayeredConfigurations} instance from the specified
+     * {@link Configurations}, the first one being the <em>top</em> layer.
+     */
+    public LayeredConfigurations(List<? extends Configurations> layers) {
+        if (layers == null) throw new NullPointerException("Null layers");
+
+        final List<Configurations> list = new ArrayList<>(layers.size());
+        for (Configurations layer: layers) {
+            if (layer == null) throw new NullPointerException("Null layer");
+            final Configurations snapshot = layer.snapshot();
+            if (snapshot instanceof LayeredConfigurations) {
+                list.addAll(Arrays.asList(((LayeredConfigurations) snapshot).layers));
+            } else if (snapshot != EMPTY_CONFIGURATIONS) {
+                list.add(snapshot);
+            }
+        }
+        this.layers = list.toArray(new Configurations[list.size()]);
+    }
+
+    /* ====================================================================== */
+    /* LOOKUPS                                                                */
+    /* ====================================================================== */
+
+    @Override
+    protected Configurations wrap(Map<?, ?> map) {
+        return layers.length == 0 ? super.wrap(map) : layers[0].wrap(map);
+    }
+
+    @Override
+    public String getString(Object key, String defaultValue) {
+        for (Configurations layer: layers) {
+            final String value = layer.getString(key, null);
+            if (value != null) return value;
+            if (layer.maps(key)) return defaultValue; // a password
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public Password getPassword(Object key) {
+        for (Configurations layer: layers) {
+            final Password password = layer.getPassword(key);
+            if (password != null) return password;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        for (Configurations layer: layers) {
+            if (layer.maps(key)) return layer.containsKey(key);
+        }
+        return false;
+    }
+
+    @Override
+    boolean maps(Object key) {
+        for (Configurations layer: layers) {
+            if (layer.maps(key)) return true;
+        }
+        return false;
+    }
+
+    /* ====================================================================== */
+    /* FLATTENED                                                              */
+    /* ====================================================================== */
+
+    @Override
+    public Set<String> keySet() {
+        return flatten().keySet();
+    }
+
+    @Override
+    public Collection<String> values() {
+        return flatten().values();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return flatten().entrySet();
+    }
+
+    @Override
+    Collection<Entry<String, String>> entries(String start) {
+        return flatten().entries(start);
+    }
+
+    @Override
+    public int size() {
+        return flatten().size();
+    }
+
+    @Override
+    int hash() {
+        return flatten().hash();
+    }
+
+    @Override
+    long fingerprint() {
+        return flatten().fingerprint();
+    }
+
+    /* Flatten our layers, bottom to top, in a single map */
+    private Configurations flatten() {
+        /* Benign race: at worst we compute this twice */
+        if (flattened != null) return flattened;
+        if (layers.length == 1) return flattened = layers[0];
+
+        /* Top to bottom, passwords on upper layers hide lower mappings */
+        final Map<String, String> map = new HashMap<>();
+        for (int x = 0; x < layers.length; x ++) {
+            for (Entry<String, String> entry: layers[x].entrySet()) {
+                final String key = entry.getKey();
+                if (map.containsKey(key) || hidden(key, x)) continue;
+                map.put(key, entry.getValue());
+            }
+        }
+
+        /* Keys and values come from other configurations, no need to validate */
+        return flattened = new MappedConfigurations(map, true) {};
+    }
+
+    /* Check if a key is mapped (to a password) in layers above the given one */
+    private boolean hidden(String key, int layer) {
+        for (int x = 0; x < layer; x ++) {
+            if (layers[x].maps(key)) return true;
+        }
+        return false;
+    }
+}
@@ -15,30 +15,63 @@
  * ========================================================================== */
 package org.usrz.libs.configurations;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 import org.usrz.libs.logging.Log;
 
 /**
- * The {@link MappedConfigurations} class represents a {@link Configurations}
- * instance backed by a {@link HashMap}.
+ * The {@link MappedConfigurations} class represents an immutable
+ * {@link Configurations} instance backed by a compact <em>open
+ * addressing</em> hash table.
+ *
+ * <p>Keys and values are stored in two parallel arrays, sorted by key, and
+ * lookups probe a table of indexes into said arrays: apart from the
+ * {@link String}s themselves, each mapping costs about <em>sixteen</em> bytes
+ * (two references, plus two table slots) and lookups never allocate.
+ * Identical values (as in <code>true</code>, <code>false</code>, ...) are
+ * stored once, no matter how many keys they are associated with.</p>
+ *
+ * <p>As keys are sorted, {@linkplain #entries(String) mappings by prefix}
+ * (used when {@linkplain #group(String) grouping},
+ * {@linkplain #strip(String) stripping} or {@linkplain #extract(String)
+ * extracting}) can be found by binary search and iterated in time
+ * proportional to the number of matches.</p>
+ *
+ * <p>Being immutable, instances compute their {@linkplain #hashCode()
+ * hash code} (and the <em>fingerprint</em> used to quickly tell unequal
+ * instances apart) only once.</p>
+ *
+ * <p>{@link Password} values are kept aside: they are available from
+ * {@link #getPassword(Object)}, but never as {@link String}s (they won't
+ * be returned by {@link #get(Object)} nor included in {@link #entrySet()}).
+ * </p>
  *
  * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
  */
 public abstract class MappedConfigurations extends Configurations {
 
-    /* Pattern for validating configuration keys */
-    private static final Pattern NAME_PATTERN = Pattern.compile("^([\\w\\$-]+(\\.[\\w\\$-]+)*)?$");
     /* Our logger */
     private static final Log log = new Log();
 
-    /* The Map of our configurations (immutable) */
-    private final Map<String, String> configurations;
+    /* Our keys, sorted, and their values (in the same order) */
+    private final String[] keys;
+    private final String[] values;
+    /* Our hash table: indexes in the arrays above plus one, zero when empty */
+    private final int[] table;
+    /* Our passwords, never stored as strings */
+    private final Map<String, Password> passwords;
+    /* Our hash code and fingerprint, computed once, zero until then */
+    private volatile int hash;
+    private volatile long fingerprint;
 
     /* ====================================================================== */
     /* CONSTRUCTION                                                           */
@@ -48,14 +81,64 @@ public abstract class MappedConfigurations extends Configurations {
      * Create a new {@link MappedConfigurations} from a {@link Map}.
      */
     protected MappedConfigurations(Map<?, ?> map)
+    throws ConfigurationsException {
+        this(map, false);
+    }
+
+    /**
+     * Create a new {@link MappedConfigurations} from a {@link Map}, trusting
+     * it if <em>normalized</em> (in other words when it is a {@link Map} of
+     * valid keys to trimmed, non-empty {@link String}s or to
+     * {@link Password}s), or normalizing it otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    MappedConfigurations(Map<?, ?> map, boolean normalized)
     throws ConfigurationsException {
         if (map == null) throw new NullPointerException("Null map");
+        final Map<String, ?> configurations = normalized ? (Map<String, ?>) map : normalize(map);
 
+        /* Separate passwords from strings, and sort our keys */
+        final Map<String, Password> passwords = new HashMap<>();
+        final String[] keys = new String[configurations.size()];
+        int size = 0;
+        for (Entry<String, ?> entry: configurations.entrySet()) {
+            final Object value = entry.getValue();
+            if (value instanceof Password) passwords.put(entry.getKey(), (Password) value);
+            else keys[size ++] = entry.getKey();
+        }
+        this.keys = size == keys.length ? keys : Arrays.copyOf(keys, size);
+        this.passwords = passwords.isEmpty() ? Collections.emptyMap() : passwords;
+        Arrays.sort(this.keys);
+
+        /* Copy our values, storing equal ones only once */
+        final Map<String, String> unique = new HashMap<>();
+        values = new String[size];
+        for (int x = 0; x < size; x ++) {
+            final String value = (String) configurations.get(this.keys[x]);
+            final String previous = unique.putIfAbsent(value, value);
+            values[x] = previous == null ? value : previous;
+        }
+
+        /* Build our hash table, at most half full */
+        int capacity = 2;
+        while (capacity < size * 2) capacity <<= 1;
+        table = new int[capacity];
+        final int mask = capacity - 1;
+        for (int x = 0; x < size; x ++) {
+            int slot = slot(this.keys[x], mask);
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = x + 1;
+        }
+    }
+
+    /* Copy a map, validating its keys and trimming its (non password) values */
+    private static Map<String, Object> normalize(Map<?, ?> map)
+    throws ConfigurationsException {
         /* Do we *really* have to check names? */
         boolean checkNames = (! (map instanceof Configurations));
 
         /* Prepare our map where key/values will be copied into */
-        final Map<String, String> configurations = new HashMap<>();
+        final Map<String, Object> configurations = new HashMap<>();
 
         /* Iterate through the given map */
         for (Entry<?, ?> entry: map.entrySet()) {
@@ -74,6 +157,10 @@ public abstract class MappedConfigurations extends Configurations {
                 log.debug("Null value in map for key \"%s\", ignoring...", key);
                 continue;
             }
+            if (object instanceof Password) {
+                configurations.put(key, object);
+                continue;
+            }
             final String value = object.toString().trim();
             if (value.length() == 0) {
                 log.debug("Empty value in map for key \"%s\", ignoring...", key);
@@ -85,7 +172,27 @@ public abstract class MappedConfigurations extends Configurations {
         }
 
         /* All done! */
-        this.configurations = Collections.unmodifiableMap(configurations);
+        return configurations;
+    }
+
+    /* ====================================================================== */
+    /* HASH TABLE                                                             */
+    /* ====================================================================== */
+
+    /* The first slot to probe for a key, spreading higher bits as HashMap does */
+    private static int slot(String key, int mask) {
+        final int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /* Return the index of the specified key in our arrays, or -1 */
+    private int indexOf(String key) {
+        final int mask = table.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            final int index = table[slot] - 1;
+            if (index < 0) return -1;
+            if (key.equals(keys[index])) return index;
+        }
     }
 
     /* ====================================================================== */
@@ -98,7 +205,7 @@ public abstract class MappedConfigurations extends Configurations {
      */
     @Override
     public boolean containsKey(Object key) {
-        return configurations.containsKey(key);
+        return (key instanceof String) && (indexOf((String) key) >= 0);
     }
 
     /**
@@ -115,21 +222,26 @@ public abstract class MappedConfigurations extends Configurations {
             string = ((String) key).trim();
         }
 
-        final String value = configurations.get(string);
-        return value == null ? defaultValue : value;
+        final int index = indexOf(string);
+        return index < 0 ? defaultValue : values[index];
     }
 
     /**
-     * Return <b>null</b> or fail with a {@link UnsupportedOperationException}.
+     * Return the {@link Password} associated with the given <em>key</em>,
+     * <b>null</b> or fail with a {@link UnsupportedOperationException} if
+     * the value was not stored securely.
+     *
+     * <p>The same {@link Password} instance is returned on each call, and
+     * {@linkplain Password#close() closing} it will wipe it from this
+     * instance as well.</p>
      */
     @Override
     public Password getPassword(Object key) {
-        if (!configurations.containsKey(key)) return null;
-        if (configurations instanceof Configurations) {
-            return ((Configurations) configurations).getPassword(key);
-        } else {
-            throw new UnsupportedOperationException("The value for \"" + key + "\" can not be retrieved securely");
-        }
+        final String string = key == null ? "" : ((String) key).trim();
+        final Password password = passwords.get(string);
+        if (password != null) return password;
+        if (indexOf(string) < 0) return null;
+        throw new UnsupportedOperationException("The value for \"" + key + "\" can not be retrieved securely");
     }
 
     /**
@@ -137,7 +249,23 @@ public abstract class MappedConfigurations extends Configurations {
      */
     @Override
     public final Set<String> keySet() {
-        return Collections.unmodifiableSet(configurations.keySet());
+        return new AbstractSet<String>() {
+
+            @Override
+            public Iterator<String> iterator() {
+                return Collections.unmodifiableList(Arrays.asList(keys)).iterator();
+            }
+
+            @Override
+            public boolean contains(Object object) {
+                return containsKey(object);
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
     }
 
     /**
@@ -146,7 +274,7 @@ public abstract class MappedConfigurations extends Configurations {
      */
     @Override
     public final Collection<String> values() {
-        return Collections.unmodifiableCollection(configurations.keySet());
+        return Collections.unmodifiableList(Arrays.asList(values));
     }
 
     /**
@@ -154,7 +282,7 @@ public abstract class MappedConfigurations extends Configurations {
      */
     @Override
     public final Set<Entry<String, String>> entrySet() {
-        return Collections.unmodifiableSet(configurations.entrySet());
+        return new Range(0, keys.length);
     }
 
     /**
@@ -162,19 +290,136 @@ public abstract class MappedConfigurations extends Configurations {
      */
     @Override
     public final int size() {
-        return configurations.size();
+        return keys.length;
+    }
+
+    @Override
+    final int hash() {
+        /* Benign race: at worst we compute this twice */
+        if (hash == 0) hash = super.hash();
+        return hash;
+    }
+
+    @Override
+    final long fingerprint() {
+        /* Benign race: at worst we compute this twice */
+        if (fingerprint == 0) fingerprint = computeFingerprint();
+        return fingerprint;
+    }
+
+    /**
+     * Returns a {@link Collection} of all the mappings whose keys start with
+     * the specified {@link String}, sorted by key, looking them up in our
+     * sorted index.
+     */
+    @Override
+    final Collection<Entry<String, String>> entries(String start) {
+        /* The first key greater than or equal to "start" */
+        int low = Arrays.binarySearch(keys, start);
+        if (low < 0) low = -low - 1;
+
+        /* Keys starting with "start" follow it, find the first one not */
+        int high = low;
+        for (int limit = keys.length; high < limit; ) {
+            final int middle = (high + limit) >>> 1;
+            if (keys[middle].startsWith(start)) high = middle + 1;
+            else limit = middle;
+        }
+
+        /* Wrap our range */
+        return low == high ? Collections.emptySet() : new Range(low, high);
+    }
+
+    /* ====================================================================== */
+    /* SORTED INDEX RANGES                                                    */
+    /* ====================================================================== */
+
+    /* A range in our sorted arrays, as a set of entries */
+    private final class Range extends AbstractSet<Entry<String, String>> {
+
+        private final int low;
+        private final int high;
+
+        private Range(int low, int high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        public int size() {
+            return high - low;
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            if (!(object instanceof Entry)) return false;
+            final Entry<?, ?> entry = (Entry<?, ?>) object;
+            final Object key = entry.getKey();
+            if (!(key instanceof String)) return false;
+            final int index = indexOf((String) key);
+            return (index >= low) && (index < high) && values[index].equals(entry.getValue());
+        }
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            return new Iterator<Entry<String, String>>() {
+
+                private int index = low;
+
+                @Override
+                public boolean hasNext() {
+                    return index < high;
+                }
+
+                @Override
+                public Entry<String, String> next() {
+                    if (index >= high) throw new NoSuchElementException();
+                    final int current = index ++;
+                    return new SimpleImmutableEntry<>(keys[current], values[current]);
+                }
+            };
+        }
     }
 
     /* ====================================================================== */
     /* VALIDATE KEY NAMES                                                     */
     /* ====================================================================== */
 
-    private static final String validateKey(Object key)
+    /**
+     * Validate and normalize (trim) a key, failing if not made of
+     * <em>segments</em> of letters, digits, "<code>_</code>",
+     * "<code>$</code>" or "<code>-</code>", separated by single dots.
+     *
+     * <p>The empty key is valid, and no allocation happens when the key is
+     * already a valid, trimmed {@link String}.</p>
+     */
+    static final String validateKey(Object key)
     throws ConfigurationsException {
         if (key == null) return "";
         final String name = key.toString().trim();
-        if (NAME_PATTERN.matcher(name).matches()) return name;
+        if (isValidKey(name)) return name;
         throw new ConfigurationsException("Invalid key name \"" + key + "\"");
     }
 
+    /* Equivalent to matching "^([\w\$-]+(\.[\w\$-]+)*)?$", in one pass */
+    static final boolean isValidKey(String name) {
+        final int length = name.length();
+        if (length == 0) return true;
+
+        boolean segment = false; // non-empty current segment
+        for (int x = 0; x < length; x ++) {
+            final char c = name.charAt(x);
+            if (c == '.') {
+                if (!segment) return false;
+                segment = false;
+            } else if (((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'))
+                    || ((c >= '0') && (c <= '9')) || (c == '_') || (c == '$') || (c == '-')) {
+                segment = true;
+            } else {
+                return false;
+            }
+        }
+        return segment;
+    }
+
 }
@@ -16,48 +16,70 @@
 package org.usrz.libs.configurations;
 
 import java.io.Closeable;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Supplier;
 
 import javax.security.auth.Destroyable;
 
+/**
+ * A {@link Password} holds a secret sequence of characters, and allows it to
+ * be wiped from memory once no longer needed.
+ *
+ * <p>The secret is kept <em>off-heap</em>, in a direct buffer which is never
+ * moved (and hence never copied) by the garbage collector, and a copy on the
+ * heap is only created when first {@linkplain #get() requested}. Both are
+ * wiped when this instance is {@linkplain #close() closed}, or (by a
+ * {@link Cleaner}) when it becomes unreachable.</p>
+ *
+ * <p>Instances are thread safe, and reading the secret never locks.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
 public final class Password implements Supplier<char[]>, Destroyable, Closeable {
 
     private static final SecureRandom random = new SecureRandom();
     private static final int hashCode = random.nextInt();
 
-    private volatile boolean destroyed = false;
-    private final Object lock = new Object();
-    private final char[] password;
+    /* The cleaner wiping unreachable passwords */
+    private static final Cleaner cleaner = Cleaner.create();
 
+    /* Our state, and the cleaner's handle for wiping it */
+    private final State state;
+    private final Cleaner.Cleanable cleanable;
+
+    /**
+     * Create a new {@link Password} from the specified characters.
+     *
+     * <p>The characters are copied off-heap, and the specified array will
+     * be wiped before this constructor returns.</p>
+     */
     public Password(char[] password) {
         if (password == null) throw new NullPointerException("Null password");
         if (password.length == 0) throw new IllegalArgumentException("Empty password");
-        this.password = password;
+
+        final CharBuffer secret = ByteBuffer.allocateDirect(password.length * 2).asCharBuffer();
+        secret.put(password).flip();
+        wipe(password);
+
+        state = new State(secret);
+        cleanable = cleaner.register(this, state);
     }
 
+    /* ====================================================================== */
+
     @Override
     public char[] get() {
-        synchronized (lock) {
-            if (!destroyed) return password;
-            throw new IllegalStateException("Password destroyed");
-        }
+        return state.get();
     }
 
     @Override
     public void close() {
-        synchronized (lock) {
-            if (destroyed) return;
-
-            /* First iteration, random characters */
-            for (int x = 0; x < password.length; x ++) {
-                password[x] = (char) random.nextInt();
-            }
-            /* Second iteration, nulls */
-            Arrays.fill(password, '\0');
-            destroyed = true;
-        }
+        cleanable.clean();
     }
 
     @Override
@@ -68,41 +90,95 @@ public final class Password implements Supplier<char[]>, Destroyable, Closeable
 
     @Override
     public boolean isDestroyed() {
-        synchronized (lock) {
-            return destroyed;
-        }
+        return state.destroyed;
     }
 
     /* ====================================================================== */
 
-    @Override
-    protected void finalize() {
-        /* Make entirely and positively sure we wipe the memory */
-        for (int x = 0; x < password.length; x ++) {
-            password[x] = (char) random.nextInt();
-        }
-        Arrays.fill(password, '\0');
-        destroyed = true;
-    }
-
     @Override
     public int hashCode() {
-        return Password.class.hashCode()
-             ^ Arrays.hashCode(password)
-             ^ hashCode;
+        /* Hash the off-heap contents as Arrays.hashCode(char[]) would */
+        final CharBuffer secret = state.secret;
+        int result = 1;
+        for (int x = 0; x < secret.limit(); x ++) result = 31 * result + secret.get(x);
+        return Password.class.hashCode() ^ result ^ hashCode;
     }
 
     @Override
     public boolean equals(Object object) {
         if (object == this) return true;
-        if (object == null) return false;
-        if (destroyed == true) return false;
-        try {
-            final Password password = (Password) object;
-            if (password.destroyed) return false;
-            return Arrays.equals(this.password, password.password);
-        } catch (ClassCastException exception) {
-            return false;
+        if (!(object instanceof Password)) return false;
+
+        final State state = ((Password) object).state;
+        if (this.state.destroyed || state.destroyed) return false;
+
+        final CharBuffer secret = state.secret;
+        if (secret.limit() != this.state.secret.limit()) return false;
+        for (int x = 0; x < secret.limit(); x ++) {
+            if (secret.get(x) != this.state.secret.get(x)) return false;
+        }
+        return true;
+    }
+
+    /* ====================================================================== */
+
+    /* Wipe an array: random characters first, then nulls */
+    private static void wipe(char[] chars) {
+        for (int x = 0; x < chars.length; x ++) chars[x] = (char) random.nextInt();
+        Arrays.fill(chars, '\0');
+    }
+
+    /* ====================================================================== */
+    /* STATE (MUST NOT REFERENCE THE PASSWORD)                                */
+    /* ====================================================================== */
+
+    private static final class State implements Runnable {
+
+        /* Marker for wiped heap copies, so that no new copies are created */
+        private static final char[] WIPED = new char[0];
+        /* Atomic updates of our heap copy */
+        private static final AtomicReferenceFieldUpdater<State, char[]> CHARS =
+                AtomicReferenceFieldUpdater.newUpdater(State.class, char[].class, "chars");
+
+        /* Our off-heap secret, and its (lazily created) heap copy */
+        private final CharBuffer secret;
+        private volatile char[] chars = null;
+        private volatile boolean destroyed = false;
+
+        private State(CharBuffer secret) {
+            this.secret = secret;
+        }
+
+        private char[] get() {
+            char[] chars = this.chars;
+            if (chars == null) {
+                /* Copy our secret on the heap, only one copy wins */
+                final char[] copy = new char[secret.limit()];
+                for (int x = 0; x < copy.length; x ++) copy[x] = secret.get(x);
+                if (CHARS.compareAndSet(this, null, copy)) {
+                    chars = copy;
+                } else {
+                    wipe(copy);
+                    chars = this.chars;
+                }
+            }
+
+            if ((chars != WIPED) && (!destroyed)) return chars;
+            throw new IllegalStateException("Password destroyed");
+        }
+
+        /* Invoked once, on close or when our password is unreachable */
+        @Override
+        public void run() {
+            destroyed = true;
+
+            /* Wipe our heap copy (if any) and prevent new ones */
+            final char[] chars = CHARS.getAndSet(this, WIPED);
+            if (chars != null) wipe(chars);
+
+            /* Wipe our off-heap secret */
+            for (int x = 0; x < secret.limit(); x ++) secret.put(x, (char) random.nextInt());
+            for (int x = 0; x < secret.limit(); x ++) secret.put(x, '\0');
         }
     }
 }
@@ -15,12 +15,19 @@
  * ========================================================================== */
 package org.usrz.libs.configurations;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Properties;
+import java.util.function.Predicate;
 
 import org.usrz.libs.configurations.Configurations;
 import org.usrz.libs.configurations.ConfigurationsException;
@@ -31,13 +38,19 @@ import org.usrz.libs.configurations.PropertiesConfigurations;
  * A {@link Configurations} implementation reading <em>key-value</em> mappings
  * from <em>Java {@linkplain Properties properties} files</em>
  *
+ * <p>Whatever their source, files are parsed following the grammar of
+ * {@link Properties#load(Reader)}, with keys validated and values trimmed
+ * as they are read, and malformed escapes reported as
+ * {@link ConfigurationsException}s.</p>
+ *
+ * <p>When constructed with a {@link Predicate} identifying <em>secret</em>
+ * keys, the values of those keys are never turned into {@link String}s, and
+ * will only be available from {@link #getPassword(Object)}.</p>
+ *
  * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
  */
 public class PropertiesConfigurations extends MappedConfigurations {
 
-    /* Our charset, UTF8, always */
-    private static final Charset UTF8 = Charset.forName("UTF8");
-
     /* ====================================================================== */
     /* CONSTRUCTION                                                           */
     /* ====================================================================== */
@@ -49,7 +62,7 @@ public class PropertiesConfigurations extends MappedConfigurations {
      */
     public PropertiesConfigurations(Reader reader)
     throws IOException, ConfigurationsException {
-        super(parse(reader));
+        super(PropertiesParser.parse(reader, (key) -> false), true);
     }
 
     /**
@@ -59,35 +72,153 @@ public class PropertiesConfigurations extends MappedConfigurations {
      */
     public PropertiesConfigurations(InputStream input)
     throws IOException, ConfigurationsException {
-        super(parse(input));
+        this(input, (key) -> false);
+    }
+
+    /**
+     * Create a new {@link PropertiesConfigurations} instance reading a
+     * <em>Java {@linkplain Properties properties} file</em> from the
+     * specified {@link File}.
+     *
+     * <p>The file will be <em>memory-mapped</em> and its contents parsed
+     * directly from the mapped buffer, without intermediate copies: this is
+     * the preferred way to read (very) large files.</p>
+     */
+    public PropertiesConfigurations(File file)
+    throws IOException, ConfigurationsException {
+        this(file, (key) -> false);
+    }
+
+    /**
+     * Create a new {@link PropertiesConfigurations} instance parsing a
+     * <em>Java {@linkplain Properties properties} file</em> contained in the
+     * specified {@link ByteBuffer}, from its position to its limit.
+     *
+     * <p>Characters are decoded straight from the buffer, whose position
+     * will not be changed, without intermediate copies.</p>
+     */
+    public PropertiesConfigurations(ByteBuffer buffer)
+    throws ConfigurationsException {
+        this(buffer, (key) -> false);
+    }
+
+    /**
+     * Create a new {@link PropertiesConfigurations} instance reading a
+     * <em>Java {@linkplain Properties properties} file</em> from the
+     * specified {@link ReadableByteChannel}.
+     *
+     * <p>The channel will be read up to its end, decoding its bytes
+     * incrementally, but will not be closed. Non-blocking
+     * {@linkplain java.nio.channels.SelectableChannel selectable channels}
+     * are not supported, and will be rejected with an
+     * {@link java.nio.channels.IllegalBlockingModeException}.</p>
+     */
+    public PropertiesConfigurations(ReadableByteChannel channel)
+    throws IOException, ConfigurationsException {
+        this(channel, (key) -> false);
+    }
+
+    /**
+     * Create a new {@link PropertiesConfigurations} instance reading a
+     * <em>Java {@linkplain Properties properties} file</em> from the
+     * specified {@link InputStream}, storing the values of the keys matching
+     * the specified {@link Predicate} as {@link Password}s.
+     */
+    public PropertiesConfigurations(InputStream input, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        super(parse(input, secrets), true);
+    }
+
+    /**
+     * Create a new <em>memory-mapped</em> {@link PropertiesConfigurations}
+     * instance reading a <em>Java {@linkplain Properties properties} file</em>
+     * from the specified {@link File}, storing the values of the keys matching
+     * the specified {@link Predicate} as {@link Password}s.
+     */
+    public PropertiesConfigurations(File file, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        super(parse(file, secrets), true);
+    }
+
+    /**
+     * Create a new {@link PropertiesConfigurations} instance parsing a
+     * <em>Java {@linkplain Properties properties} file</em> contained in the
+     * specified {@link ByteBuffer}, storing the values of the keys matching
+     * the specified {@link Predicate} as {@link Password}s.
+     */
+    public PropertiesConfigurations(ByteBuffer buffer, Predicate<String> secrets)
+    throws ConfigurationsException {
+        super(PropertiesParser.parse(buffer, secrets), true);
+    }
+
+    /**
+     * Create a new {@link PropertiesConfigurations} instance reading a
+     * <em>Java {@linkplain Properties properties} file</em> from the
+     * specified {@link ReadableByteChannel}, storing the values of the keys
+     * matching the specified {@link Predicate} as {@link Password}s.
+     */
+    public PropertiesConfigurations(ReadableByteChannel channel, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        super(PropertiesParser.parse(channel, secrets), true);
     }
 
     /* ====================================================================== */
 
     /**
-     * Parse a <em>Java properties file</em> and return a {@link Properties}
-     * instance with its contents, after validating each key name.
+     * Memory-map a <em>Java properties file</em> and return a {@link Map}
+     * with its contents, after validating each key name.
      */
-    private static final Properties parse(InputStream input)
-    throws IOException {
-        if (input == null) throw new NullPointerException("Null input stream");
-        return parse(new InputStreamReader(input, UTF8));
+    private static final Map<String, Object> parse(File file, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        if (file == null) throw new NullPointerException("Null file");
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new ConfigurationsException("File " + file + " too big to be mapped (" + size + " bytes)");
+            return parse(file, channel.map(MapMode.READ_ONLY, 0, size), secrets);
+        }
     }
 
     /**
-     * Parse a <em>Java properties file</em> and return a {@link Properties}
-     * instance with its contents, after validating each key name.
+     * Parse a <em>Java properties file</em> from its memory-mapped contents,
+     * failing with a {@link ConfigurationsException} (rather than with an
+     * {@link InternalError}) should the file be truncated in the meantime.
      */
-    private static final Properties parse(Reader reader)
-    throws IOException {
-        if (reader == null) throw new NullPointerException("Null reader");
+    static final Map<String, Object> parse(File file, ByteBuffer mapped, Predicate<String> secrets)
+    throws ConfigurationsException {
+        try {
+            return PropertiesParser.parse(mapped, secrets);
+        } catch (InternalError error) {
+            /* Accessing pages past the end of a truncated file faults */
+            throw new ConfigurationsException("File " + file + " truncated while being parsed", error);
+        }
+    }
+
+    /**
+     * Read a <em>Java properties file</em> fully and return a {@link Map}
+     * with its contents, wiping any copy of its bytes afterwards.
+     */
+    private static final Map<String, Object> parse(InputStream input, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        if (input == null) throw new NullPointerException("Null input stream");
 
-        /* Load our properties */
-        final Properties properties = new Properties();
-        properties.load(reader);
+        byte[] bytes = new byte[8192];
+        int length = 0;
+        try {
+            int read;
+            while ((read = input.read(bytes, length, bytes.length - length)) >= 0) {
+                length += read;
+                if (length < bytes.length) continue;
 
-        /* Return our properties */
-        return properties;
+                /* Grow our buffer, wiping the old one */
+                final byte[] grown = Arrays.copyOf(bytes, bytes.length * 2);
+                Arrays.fill(bytes, (byte) 0);
+                bytes = grown;
+            }
+            return PropertiesParser.parse(ByteBuffer.wrap(bytes, 0, length), secrets);
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
     }
 
 }
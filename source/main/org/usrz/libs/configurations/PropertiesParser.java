@@ -0,0 +1,388 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Predicate;
+
+import org.usrz.libs.logging.Log;
+
+/**
+ * A parser for <em>Java {@linkplain Properties properties} files</em>
+ * decoding <em>UTF-8</em> bytes straight from a {@link ByteBuffer}, or
+ * incrementally from a {@link ReadableByteChannel}, or reading characters
+ * from any {@link Reader}.
+ *
+ * <p>This parser follows the grammar described by
+ * {@link Properties#load(java.io.Reader)} (comments, separators, escapes and
+ * line continuations), but rather than populating a {@link Properties}
+ * instance it validates keys and trims values as {@link MappedConfigurations}
+ * would, producing a {@link Map} which can be adopted without copying.</p>
+ *
+ * <p>Values for <em>secret</em> keys are never turned into {@link String}s,
+ * but stored in the returned {@link Map} as {@link Password}s, and the
+ * parser's own buffers holding them are wiped after use.</p>
+ *
+ * <p>Malformed <em>UTF-8</em> sequences are replaced by the
+ * <code>U+FFFD</code> replacement character, as a decoding
+ * {@link java.io.InputStreamReader InputStreamReader} would do.</p>
+ *
+ * @see Utf8Reader
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+final class PropertiesParser {
+
+    /* End of input, and the byte order mark */
+    private static final int EOF = -1;
+    private static final int BOM = '\uFEFF';
+
+    /* Our logger */
+    private static final Log log = new Log();
+
+    /* The reader we decode from, and the keys whose values are secret */
+    private final Reader reader;
+    private final Predicate<String> secrets;
+    /* The current logical line, and a builder for unescaping */
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder builder = new StringBuilder();
+    /* The previous character read, the current natural line and the line where the logical one starts */
+    private int previous = EOF;
+    private int lines = 1;
+    private int start = 1;
+
+    private PropertiesParser(Reader reader, Predicate<String> secrets) {
+        this.reader = reader;
+        this.secrets = secrets;
+    }
+
+    /* ====================================================================== */
+
+    /**
+     * Parse the <em>properties file</em> contained in the specified
+     * {@link ByteBuffer} (from its position to its limit) and return its
+     * <em>key-value</em> mappings, with keys validated and empty values
+     * removed.
+     *
+     * <p>The position of the specified buffer will not be changed.</p>
+     */
+    static Map<String, Object> parse(ByteBuffer buffer)
+    throws ConfigurationsException {
+        return parse(buffer, (key) -> false);
+    }
+
+    /**
+     * Parse the <em>properties file</em> contained in the specified
+     * {@link ByteBuffer} (from its position to its limit) and return its
+     * <em>key-value</em> mappings, with keys validated and empty values
+     * removed, and values for keys matching the specified {@link Predicate}
+     * stored as {@link Password}s.
+     *
+     * <p>The position of the specified buffer will not be changed.</p>
+     */
+    static Map<String, Object> parse(ByteBuffer buffer, Predicate<String> secrets)
+    throws ConfigurationsException {
+        if (buffer == null) throw new NullPointerException("Null buffer");
+        if (secrets == null) throw new NullPointerException("Null secrets");
+        try {
+            return new PropertiesParser(new Utf8Reader(buffer), secrets).parse();
+        } catch (IOException exception) {
+            /* Buffers are never refilled, this should never happen */
+            throw new IllegalStateException("I/O error parsing buffer", exception);
+        }
+    }
+
+    /**
+     * Parse the <em>properties file</em> read from the specified
+     * {@link ReadableByteChannel}, decoding its bytes incrementally, and
+     * return its <em>key-value</em> mappings, with keys validated and empty
+     * values removed, and values for keys matching the specified
+     * {@link Predicate} stored as {@link Password}s.
+     *
+     * <p>The channel will be read up to its end, but will not be closed.</p>
+     */
+    static Map<String, Object> parse(ReadableByteChannel channel, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        if (channel == null) throw new NullPointerException("Null channel");
+        if (secrets == null) throw new NullPointerException("Null secrets");
+
+        /* Our reader's buffer might hold secrets, wipe it when done */
+        try (final Utf8Reader reader = new Utf8Reader(channel)) {
+            return new PropertiesParser(reader, secrets).parse();
+        }
+    }
+
+    /**
+     * Parse the <em>properties file</em> read from the specified
+     * {@link Reader} and return its <em>key-value</em> mappings, with keys
+     * validated and empty values removed, and values for keys matching the
+     * specified {@link Predicate} stored as {@link Password}s.
+     *
+     * <p>The reader will be read up to its end, but will not be closed.</p>
+     */
+    static Map<String, Object> parse(Reader reader, Predicate<String> secrets)
+    throws IOException, ConfigurationsException {
+        if (reader == null) throw new NullPointerException("Null reader");
+        if (secrets == null) throw new NullPointerException("Null secrets");
+        return new PropertiesParser(reader, secrets).parse();
+    }
+
+    /* ====================================================================== */
+
+    private Map<String, Object> parse()
+    throws IOException, ConfigurationsException {
+        final Map<String, Object> map = new HashMap<>();
+
+        while (readLine()) {
+            final int limit = line.length();
+
+            /* The key extends to the first unescaped separator or whitespace */
+            int keyLength = 0;
+            int valueStart = limit;
+            boolean separator = false;
+            boolean backslash = false;
+            while (keyLength < limit) {
+                final char c = line.charAt(keyLength);
+                if (!backslash) {
+                    if ((c == '=') || (c == ':')) {
+                        valueStart = keyLength + 1;
+                        separator = true;
+                        break;
+                    } else if (isWhitespace(c)) {
+                        valueStart = keyLength + 1;
+                        break;
+                    }
+                }
+                backslash = (c == '\\') && !backslash;
+                keyLength ++;
+            }
+
+            /* Whitespace, optionally around a single separator, precedes the value */
+            while (valueStart < limit) {
+                final char c = line.charAt(valueStart);
+                if (!isWhitespace(c)) {
+                    if (separator || ((c != '=') && (c != ':'))) break;
+                    separator = true;
+                }
+                valueStart ++;
+            }
+
+            /* Normalize as MappedConfigurations would */
+            final String key = MappedConfigurations.validateKey(unescape(0, keyLength));
+
+            /* Secrets never become strings */
+            if (secrets.test(key)) {
+                try {
+                    final Password password = secret(valueStart, limit);
+                    if (password != null) map.put(key, password);
+                    else map.remove(key);
+                } finally {
+                    wipe(line);
+                    wipe(builder);
+                }
+                continue;
+            }
+
+            final String value = unescape(valueStart, limit).trim();
+            if (value.length() == 0) {
+                log.debug("Empty value for key \"%s\", ignoring...", key);
+                map.remove(key); // later mappings override earlier ones
+            } else {
+                map.put(key, value);
+            }
+        }
+
+        return map;
+    }
+
+    /* ====================================================================== */
+    /* LOGICAL LINES                                                          */
+    /* ====================================================================== */
+
+    /*
+     * Read the next logical line (skipping blank and comment lines, joining
+     * continuations) into our "line" buffer, returning false at the end.
+     */
+    private boolean readLine()
+    throws IOException {
+        line.setLength(0);
+
+        boolean skipWhitespace = true;
+        boolean newLine = true;
+        boolean comment = false;
+        boolean continuation = false;
+        boolean backslash = false;
+        boolean skipLF = false;
+
+        int c;
+        while ((c = read()) != EOF) {
+            /* The LF in a CR-LF sequence */
+            if (skipLF) {
+                skipLF = false;
+                if (c == '\n') continue;
+            }
+
+            /* Leading whitespace (and blank lines, unless continuing) */
+            if (skipWhitespace) {
+                if (isWhitespace(c)) continue;
+                if (!continuation && ((c == '\r') || (c == '\n'))) continue;
+                skipWhitespace = false;
+                continuation = false;
+            }
+
+            /* Comment lines start with "#" or "!" */
+            if (newLine) {
+                newLine = false;
+                start = lines;
+                if ((c == '#') || (c == '!')) {
+                    comment = true;
+                    continue;
+                }
+            }
+
+            /* Anything but a line terminator */
+            if ((c != '\n') && (c != '\r')) {
+                if (!comment) line.append((char) c);
+                backslash = (c == '\\') && !backslash;
+                continue;
+            }
+
+            /* End of a comment (or empty continued) line, start over */
+            if (comment || (line.length() == 0)) {
+                comment = false;
+                newLine = true;
+                skipWhitespace = true;
+                backslash = false;
+                line.setLength(0);
+                continue;
+            }
+
+            /* Not continued, our logical line is done */
+            if (!backslash) return true;
+
+            /* Continued: drop the backslash, skip leading whitespace */
+            line.setLength(line.length() - 1);
+            skipWhitespace = true;
+            continuation = true;
+            backslash = false;
+            if (c == '\r') skipLF = true;
+        }
+
+        /* End of input */
+        if (comment || (line.length() == 0)) return false;
+        if (backslash) line.setLength(line.length() - 1);
+        return true;
+    }
+
+    /* ====================================================================== */
+
+    /* Unescape a region of our current logical line */
+    private String unescape(int from, int to)
+    throws ConfigurationsException {
+        /* No backslashes, no copies */
+        final int first = line.indexOf("\\", from);
+        if ((first < 0) || (first >= to)) return line.substring(from, to);
+
+        unescapeToBuilder(from, to);
+        return builder.toString();
+    }
+
+    /* Unescape and trim a secret region of our current line as a password */
+    private Password secret(int from, int to)
+    throws ConfigurationsException {
+        unescapeToBuilder(from, to);
+
+        /* Trim as String.trim() would do */
+        int start = 0;
+        int end = builder.length();
+        while ((start < end) && (builder.charAt(start) <= ' ')) start ++;
+        while ((end > start) && (builder.charAt(end - 1) <= ' ')) end --;
+        if (start == end) return null;
+
+        /* The password will wipe our characters */
+        final char[] chars = new char[end - start];
+        builder.getChars(start, end, chars, 0);
+        return new Password(chars);
+    }
+
+    /* Wipe the contents of a builder */
+    private static void wipe(StringBuilder builder) {
+        for (int x = 0; x < builder.length(); x ++) builder.setCharAt(x, '\0');
+        builder.setLength(0);
+    }
+
+    /* Unescape a region of our current logical line into our builder */
+    private void unescapeToBuilder(int from, int to)
+    throws ConfigurationsException {
+        builder.setLength(0);
+        for (int x = from; x < to; ) {
+            char c = line.charAt(x ++);
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+
+            /* A trailing backslash escapes nothing */
+            if (x == to) break;
+            c = line.charAt(x ++);
+            switch (c) {
+                case 't': builder.append('\t'); break;
+                case 'r': builder.append('\r'); break;
+                case 'n': builder.append('\n'); break;
+                case 'f': builder.append('\f'); break;
+                case 'u':
+                    if (x + 4 > to) throw malformed();
+                    int value = 0;
+                    for (int y = 0; y < 4; y ++) {
+                        final int digit = Character.digit(line.charAt(x ++), 16);
+                        if (digit < 0) throw malformed();
+                        value = (value << 4) | digit;
+                    }
+                    builder.append((char) value);
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+
+    private ConfigurationsException malformed() {
+        return new ConfigurationsException("Malformed \\uxxxx encoding at line " + start);
+    }
+
+    /* ====================================================================== */
+
+    /* Read the next character, or EOF, counting lines */
+    private int read()
+    throws IOException {
+        int c = reader.read();
+
+        /* Skip any byte order mark, only ever at the very start */
+        if ((c == BOM) && (previous == EOF) && (lines == 1)) c = reader.read();
+        if ((c == '\r') || ((c == '\n') && (previous != '\r'))) lines ++;
+        return previous = c;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return (c == ' ') || (c == '\t') || (c == '\f');
+    }
+}
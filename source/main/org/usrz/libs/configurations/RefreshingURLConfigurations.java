@@ -0,0 +1,206 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.File;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.usrz.libs.logging.Log;
+
+/**
+ * A {@link Configurations} implementation parsing mappings from a
+ * {@link URL} like {@link CachingURLConfigurations} does, and periodically
+ * <em>refreshing</em> them.
+ *
+ * <p>The URL is fetched again, and re-parsed, at a configurable interval,
+ * randomly <em>jittered</em> by up to ten percent so that many instances
+ * created at the same time won't all hit their servers at once. A shared
+ * {@link ScheduledExecutorService} is only used for timing: fetches are
+ * made asynchronously (with {@link java.net.http.HttpClient HttpClient}
+ * for <em>HTTP</em> and <em>HTTPS</em> URLs), so that unresponsive servers
+ * never hold up the refreshing of other instances. Thanks to conditional
+ * requests, unchanged documents are neither downloaded nor parsed again,
+ * and should fetching fail the previous mappings will be kept.</p>
+ *
+ * <p>By default all instances share a {@linkplain #DEFAULT_EXECUTOR single
+ * executor} with only two (daemon) threads, but a different one can be
+ * specified at construction.</p>
+ *
+ * <p>As with all {@link ReloadableConfigurations}, methods of this class
+ * operate on an immutable {@linkplain #snapshot() snapshot} replaced
+ * atomically on refresh, and instances must be {@linkplain #close() closed}
+ * to stop refreshing.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+public class RefreshingURLConfigurations extends ReloadableConfigurations {
+
+    /**
+     * The default executor, shared by all instances, refreshing on two
+     * daemon threads.
+     */
+    public static final ScheduledExecutorService DEFAULT_EXECUTOR;
+
+    static {
+        final AtomicInteger threads = new AtomicInteger();
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2, (runnable) -> {
+            final Thread thread = new Thread(runnable, "Configurations refresher #" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        /* Don't keep closed instances around until their next refresh */
+        executor.setRemoveOnCancelPolicy(true);
+        DEFAULT_EXECUTOR = executor;
+    }
+
+    /* Our log */
+    private static final Log log = new Log();
+
+    /* The URL to refresh, and where to cache it */
+    private final URL url;
+    private final File directory;
+    /* Our refresh interval, in milliseconds */
+    private final long interval;
+    /* The executor refreshing us */
+    private final ScheduledExecutorService executor;
+
+    /* Our next scheduled refresh, null once closed */
+    private ScheduledFuture<?> refresh;
+
+    /* ====================================================================== */
+    /* CONSTRUCTION                                                           */
+    /* ====================================================================== */
+
+    /**
+     * Create a new {@link RefreshingURLConfigurations} instance parsing
+     * the specified {@link URL}, refreshing it at the given interval on the
+     * {@linkplain #DEFAULT_EXECUTOR default executor}, and caching it in the
+     * specified (private) directory.
+     *
+     * @see CachingURLConfigurations
+     */
+    public RefreshingURLConfigurations(URL url, Duration interval, File directory)
+    throws ConfigurationsException {
+        this(url, interval, directory, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Create a new {@link RefreshingURLConfigurations} instance parsing
+     * the specified {@link URL}, refreshing it at the given interval on the
+     * specified {@link ScheduledExecutorService}, and caching it in the
+     * specified directory.
+     */
+    public RefreshingURLConfigurations(URL url, Duration interval, File directory, ScheduledExecutorService executor)
+    throws ConfigurationsException {
+        /* Initial load, in the caller's thread */
+        super(CachingURLConfigurations.fetch(url, directory));
+
+        if (interval == null) throw new NullPointerException("Null interval");
+        if (interval.isNegative() || (interval.toMillis() < 1)) throw new IllegalArgumentException("Invalid interval " + interval);
+
+        this.url = url;
+        this.directory = directory;
+        this.interval = interval.toMillis();
+        this.executor = Objects.requireNonNull(executor, "Null executor");
+
+        schedule();
+    }
+
+    /* ====================================================================== */
+    /* REFRESHING                                                             */
+    /* ====================================================================== */
+
+    /**
+     * Add a listener to be notified (from the executor's threads) with the
+     * new snapshot and its {@linkplain ConfigurationsDiff differences} from
+     * the previous one every time the URL is refreshed (with empty
+     * differences when only secrets might have changed).
+     */
+    @Override
+    public RefreshingURLConfigurations addListener(BiConsumer<Configurations, ConfigurationsDiff> listener) {
+        super.addListener(listener);
+        return this;
+    }
+
+    /**
+     * Remove a listener previously {@linkplain #addListener(BiConsumer) added}.
+     */
+    @Override
+    public RefreshingURLConfigurations removeListener(BiConsumer<Configurations, ConfigurationsDiff> listener) {
+        super.removeListener(listener);
+        return this;
+    }
+
+    /**
+     * Stop refreshing our URL.
+     */
+    @Override
+    public synchronized void close() {
+        if (refresh == null) return;
+        refresh.cancel(false);
+        refresh = null;
+        log.debug("Stopped refreshing URL %s", url);
+    }
+
+    /* ====================================================================== */
+
+    /* Schedule our next refresh, jittered by up to 10% */
+    private synchronized void schedule() {
+        final long jitter = interval / 10;
+        final long delay = interval - jitter + ThreadLocalRandom.current().nextLong(jitter * 2 + 1);
+        refresh = executor.schedule(this::refresh, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /* Start fetching, off the executor's threads, and publish back on them */
+    private void refresh() {
+        try {
+            CachingURLConfigurations.fetchAsync(url, directory).whenCompleteAsync(this::refreshed, executor);
+        } catch (RuntimeException exception) {
+            refreshed(null, exception);
+        }
+    }
+
+    private void refreshed(Configurations configurations, Throwable throwable) {
+        try {
+            if (throwable != null) {
+                final Throwable cause = (throwable instanceof CompletionException) && (throwable.getCause() != null) ? throwable.getCause() : throwable;
+                log.warn("Error refreshing URL %s, keeping current configurations: %s", url, cause.getMessage());
+            } else {
+                final ConfigurationsDiff diff = update(configurations);
+                if (diff.isEmpty()) log.debug("URL %s refreshed, no visible changes", url);
+                else log.debug("URL %s refreshed, %d keys changed", url, diff.getKeys().size());
+            }
+        } catch (RuntimeException exception) {
+            log.warn("Error refreshing URL %s, keeping current configurations: %s", url, exception.getMessage());
+        }
+
+        /* Schedule again, unless closed in the meantime */
+        synchronized (this) {
+            if (refresh != null) schedule();
+        }
+    }
+
+}
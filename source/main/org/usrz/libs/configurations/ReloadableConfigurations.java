@@ -0,0 +1,196 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+import org.usrz.libs.logging.Log;
+
+/**
+ * A base class for {@link Configurations} whose mappings are
+ * <em>reloaded</em> over time, for example from a
+ * {@linkplain ReloadingFileConfigurations file} or a
+ * {@linkplain RefreshingURLConfigurations URL}.
+ *
+ * <p>All methods of this class operate on an immutable
+ * {@linkplain #snapshot() snapshot} of the current mappings, replaced
+ * atomically by {@link #update(Configurations)}: readers never block, and
+ * never see partially loaded mappings. Anything derived from this instance
+ * (like {@link #strip(String) stripped} views or {@link #merge(Map) merged}
+ * configurations) is derived from the snapshot current at the time of the
+ * call.</p>
+ *
+ * <p>Instances must be {@linkplain #close() closed} to stop reloading.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+public abstract class ReloadableConfigurations extends Configurations implements Closeable {
+
+    /* Our log */
+    private static final Log log = new Log();
+
+    /* Listeners to notify on changes */
+    private final Collection<BiConsumer<Configurations, ConfigurationsDiff>> listeners = new CopyOnWriteArrayList<>();
+
+    /* The current snapshot of our mappings */
+    private volatile Configurations configurations;
+
+    /* ====================================================================== */
+    /* CONSTRUCTION                                                           */
+    /* ====================================================================== */
+
+    /**
+     * Create a new {@link ReloadableConfigurations} instance with the
+     * specified initial mappings.
+     */
+    protected ReloadableConfigurations(Configurations configurations) {
+        this.configurations = Objects.requireNonNull(configurations, "Null configurations").snapshot();
+    }
+
+    /* ====================================================================== */
+    /* RELOADING                                                              */
+    /* ====================================================================== */
+
+    /**
+     * Return the current <em>immutable</em> snapshot of our mappings.
+     */
+    @Override
+    public Configurations snapshot() {
+        return configurations;
+    }
+
+    /**
+     * Add a listener to be notified (from the reloading thread) with the new
+     * snapshot and its {@linkplain ConfigurationsDiff differences} from the
+     * previous one every time new mappings are published.
+     *
+     * <p>As {@link Password}s are never compared, the differences will be
+     * <em>empty</em> when only secrets (if anything at all) changed.</p>
+     */
+    public ReloadableConfigurations addListener(BiConsumer<Configurations, ConfigurationsDiff> listener) {
+        listeners.add(Objects.requireNonNull(listener, "Null listener"));
+        return this;
+    }
+
+    /**
+     * Remove a listener previously {@linkplain #addListener(BiConsumer) added}.
+     */
+    public ReloadableConfigurations removeListener(BiConsumer<Configurations, ConfigurationsDiff> listener) {
+        listeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * Stop reloading our mappings.
+     */
+    @Override
+    public abstract void close();
+
+    /**
+     * Replace our current snapshot with the specified (reloaded) mappings,
+     * notifying all listeners, and return the differences between the two.
+     *
+     * <p>Unless the specified mappings are the very same as our current
+     * ones, they are always published: {@link Password}s are never
+     * compared, and a reload changing only secrets must take effect even if
+     * the returned differences are <em>empty</em>.</p>
+     */
+    protected final ConfigurationsDiff update(Configurations current) {
+        if (current == null) throw new NullPointerException("Null configurations");
+
+        /* Nothing reloaded, nothing to publish */
+        final Configurations snapshot = current.snapshot();
+        if (snapshot == configurations) return ConfigurationsDiff.EMPTY;
+
+        /* Publish our new snapshot and notify */
+        final ConfigurationsDiff diff = configurations.diff(snapshot);
+        configurations = snapshot;
+        for (BiConsumer<Configurations, ConfigurationsDiff> listener: listeners) {
+            try {
+                listener.accept(snapshot, diff);
+            } catch (RuntimeException exception) {
+                log.warn("Listener %s failed handling changes: %s", listener, exception);
+            }
+        }
+        return diff;
+    }
+
+    /* ====================================================================== */
+    /* DELEGATED METHODS                                                      */
+    /* ====================================================================== */
+
+    @Override
+    protected Configurations wrap(Map<?, ?> map) {
+        return configurations.wrap(map);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return configurations.containsKey(key);
+    }
+
+    @Override
+    public String getString(Object key, String defaultValue) {
+        return configurations.getString(key, defaultValue);
+    }
+
+    @Override
+    public Password getPassword(Object key) {
+        return configurations.getPassword(key);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return configurations.keySet();
+    }
+
+    @Override
+    public Collection<String> values() {
+        return configurations.values();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return configurations.entrySet();
+    }
+
+    @Override
+    Collection<Entry<String, String>> entries(String start) {
+        return configurations.entries(start);
+    }
+
+    @Override
+    public int size() {
+        return configurations.size();
+    }
+
+    @Override
+    int hash() {
+        return configurations.hash();
+    }
+
+    @Override
+    long fingerprint() {
+        return configurations.fingerprint();
+    }
+
+}
@@ -0,0 +1,230 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.usrz.libs.logging.Log;
+
+/**
+ * A {@link Configurations} implementation parsing mappings from a
+ * {@link File} like {@link FileConfigurations} does, and <em>reloading</em>
+ * them whenever the file changes.
+ *
+ * <p>Changes are detected by a {@link WatchService} on the directory
+ * containing the file, and the file is re-parsed by a background thread once
+ * no further changes were seen for a (configurable) <em>debounce</em> time.
+ * Should parsing fail, the previous mappings will be kept.</p>
+ *
+ * <p>All methods of this class operate on an immutable
+ * {@linkplain #snapshot() snapshot} of the file's mappings, replaced
+ * atomically on reload: readers never block, and never see partially loaded
+ * mappings. Anything derived from this instance (like {@link #strip(String)
+ * stripped} views or {@link #merge(Map) merged} configurations) is derived
+ * from the snapshot current at the time of the call.</p>
+ *
+ * <p>Instances must be {@linkplain #close() closed} to stop watching.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+public class ReloadingFileConfigurations extends ReloadableConfigurations {
+
+    /**
+     * The default <em>debounce</em> time (half a second).
+     */
+    public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(500);
+
+    /* Our log */
+    private static final Log log = new Log();
+
+    /* The file we watch, and the name we look for in events */
+    private final File file;
+    private final Path name;
+    /* How long to wait for changes to settle, in milliseconds */
+    private final long debounce;
+    /* Our watch service */
+    private final WatchService watcher;
+
+    /* ====================================================================== */
+    /* CONSTRUCTION                                                           */
+    /* ====================================================================== */
+
+    /**
+     * Create a new {@link ReloadingFileConfigurations} instance parsing and
+     * watching the specified {@link File}, using the
+     * {@linkplain #DEFAULT_DEBOUNCE default debounce time}.
+     */
+    public ReloadingFileConfigurations(File file)
+    throws ConfigurationsException {
+        this(file, DEFAULT_DEBOUNCE);
+    }
+
+    /**
+     * Create a new {@link ReloadingFileConfigurations} instance parsing and
+     * watching the specified {@link File}, reloading it once no further
+     * changes were seen for the specified <em>debounce</em> time.
+     */
+    public ReloadingFileConfigurations(File file, Duration debounce)
+    throws ConfigurationsException {
+        /* Initial load, in the caller's thread */
+        super(load(file));
+
+        if (debounce == null) throw new NullPointerException("Null debounce");
+        if (debounce.isNegative()) throw new IllegalArgumentException("Negative debounce " + debounce);
+
+        this.file = file.getAbsoluteFile();
+        this.debounce = debounce.toMillis();
+        name = this.file.toPath().getFileName();
+
+        /* Start watching our directory, not leaking our watcher on errors */
+        final Path directory = this.file.toPath().getParent();
+        try {
+            watcher = directory.getFileSystem().newWatchService();
+        } catch (IOException exception) {
+            throw new ConfigurationsException("I/O error watching file " + this.file, exception);
+        }
+        try {
+            directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        } catch (IOException | RuntimeException exception) {
+            try {
+                watcher.close();
+            } catch (IOException suppressed) {
+                exception.addSuppressed(suppressed);
+            }
+            if (exception instanceof RuntimeException) throw (RuntimeException) exception;
+            throw new ConfigurationsException("I/O error watching file " + this.file, exception);
+        }
+
+        /* Poll our watcher in a background thread */
+        final Thread thread = new Thread(this::watch, "Configurations watcher for " + this.file);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /* ====================================================================== */
+    /* RELOADING                                                              */
+    /* ====================================================================== */
+
+    /**
+     * Add a listener to be notified (from the watching thread) with the new
+     * snapshot and its {@linkplain ConfigurationsDiff differences} from the
+     * previous one every time the file is reloaded (with empty differences
+     * when only secrets might have changed).
+     */
+    @Override
+    public ReloadingFileConfigurations addListener(BiConsumer<Configurations, ConfigurationsDiff> listener) {
+        super.addListener(listener);
+        return this;
+    }
+
+    /**
+     * Remove a listener previously {@linkplain #addListener(BiConsumer) added}.
+     */
+    @Override
+    public ReloadingFileConfigurations removeListener(BiConsumer<Configurations, ConfigurationsDiff> listener) {
+        super.removeListener(listener);
+        return this;
+    }
+
+    /**
+     * Stop watching our file for changes.
+     */
+    @Override
+    public void close() {
+        try {
+            watcher.close();
+        } catch (IOException exception) {
+            log.debug("I/O error closing watcher for file %s", file);
+        }
+    }
+
+    /* ====================================================================== */
+
+    /* Our initial load, before watching */
+    private static final Configurations load(File file)
+    throws ConfigurationsException {
+        if (file == null) throw new NullPointerException("Null file");
+        return new FileConfigurations(file.getAbsoluteFile());
+    }
+
+    private void watch() {
+        log.debug("Watching file %s for changes", file);
+        try {
+            while (true) {
+                /* Wait for something to happen to our file */
+                if (!changed(watcher.take())) continue;
+
+                /* Wait for things to settle down */
+                WatchKey key;
+                while ((key = watcher.poll(debounce, TimeUnit.MILLISECONDS)) != null) changed(key);
+
+                reload();
+            }
+        } catch (ClosedWatchServiceException exception) {
+            log.debug("Stopped watching file %s", file);
+        } catch (InterruptedException exception) {
+            log.debug("Interrupted watching file %s", file);
+        }
+    }
+
+    /* Check (and reset) a watch key, returning true if our file changed */
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event: key.pollEvents()) {
+            if ((event.kind() == OVERFLOW) || name.equals(event.context())) changed = true;
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        if (!file.isFile()) {
+            log.debug("File %s disappeared, keeping current configurations", file);
+            return;
+        }
+
+        /* Parse our file, keeping the old snapshot on errors (including the
+         * file disappearing again, failing with IllegalArgumentException) */
+        final Configurations current;
+        try {
+            current = new FileConfigurations(file);
+        } catch (RuntimeException exception) {
+            log.warn("Error reloading file %s, keeping current configurations: %s", file, exception.getMessage());
+            return;
+        }
+
+        /* Publish our new snapshot, if anything changed */
+        final ConfigurationsDiff diff = update(current);
+        if (diff.isEmpty()) log.debug("File %s reloaded, no visible changes", file);
+        else log.debug("File %s reloaded, %d keys changed", file, diff.getKeys().size());
+    }
+
+}
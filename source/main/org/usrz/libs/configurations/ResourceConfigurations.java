@@ -15,6 +15,7 @@
  * ========================================================================== */
 package org.usrz.libs.configurations;
 
+import java.lang.StackWalker.Option;
 import java.net.URL;
 import java.util.Properties;
 
@@ -27,6 +28,9 @@ import java.util.Properties;
  */
 public class ResourceConfigurations extends DelegateConfigurations {
 
+    /* Our stack walker, to find out who called us */
+    private static final StackWalker WALKER = StackWalker.getInstance(Option.RETAIN_CLASS_REFERENCE);
+
     /**
      * Create a new {@link ResourceConfigurations} instance parsing the
      * specified resource associated with the <em>caller</em> {@link Class}.
@@ -49,12 +53,9 @@ public class ResourceConfigurations extends DelegateConfigurations {
 
     private static URLConfigurations load(String resource)
     throws ConfigurationsException {
-        final String className = new Throwable().getStackTrace()[2].getClassName();
-        try {
-            return load(Class.forName(className), resource);
-        } catch (ClassNotFoundException exception) {
-            throw new ConfigurationsException("Class \"" + className + "\" not found", exception);
-        }
+        /* Skip ourselves and our constructor, the next frame is our caller */
+        final Class<?> caller = WALKER.walk((frames) -> frames.skip(2).findFirst()).get().getDeclaringClass();
+        return load(caller, resource);
     }
 
     private static URLConfigurations load(Class<?> clazz, String resource)
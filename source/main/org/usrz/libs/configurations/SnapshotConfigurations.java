@@ -0,0 +1,437 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Configurations} implementation reading its mappings straight
+ * from a <em>binary snapshot</em>, normally a <em>memory-mapped</em> file.
+ *
+ * <p>Snapshots are {@linkplain #write(Configurations, File) written} from any
+ * {@link Configurations} instance, and contain a table of keys, sorted, each
+ * pointing at its key and value in a pool of <em>UTF-8</em> strings (where
+ * identical values are stored only once). Construction only validates the
+ * snapshot's header: nothing is parsed or copied up front, lookups are
+ * binary searches over the mapped table, and a {@link String} is only
+ * decoded when a value is actually returned.</p>
+ *
+ * <p>The snapshot format is as follows (all integers are big-endian):</p>
+ *
+ * <ul>
+ *   <li>the four bytes "<code>UCFG</code>", followed by the format version
+ *       (an <code>int</code>, currently <code>1</code>) and the number of
+ *       mappings (another <code>int</code>);</li>
+ *   <li>one sixteen-byte record per mapping, sorted by key, made of the
+ *       offset and length of the key, followed by the offset and length of
+ *       the value, all relative to the start of the string pool;</li>
+ *   <li>the string pool, immediately following the last record.</li>
+ * </ul>
+ *
+ * <p>{@link Password}s are never written to snapshots, and will never be
+ * available from instances of this class.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+public class SnapshotConfigurations extends Configurations {
+
+    /* Our magic "UCFG" and current version */
+    private static final int MAGIC = 0x55434647;
+    private static final int VERSION = 1;
+    /* The sizes of our header and of each record */
+    private static final int HEADER = 12;
+    private static final int RECORD = 16;
+    /* The positions of keys and values within each record */
+    private static final int KEY = 0;
+    private static final int VALUE = 8;
+
+    /* Our snapshot, its number of mappings, and the start of its pool */
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int pool;
+    /* Our hash code and fingerprint, computed once, zero until then */
+    private volatile int hash;
+    private volatile long fingerprint;
+
+    /* ====================================================================== */
+    /* CONSTRUCTION                                                           */
+    /* ====================================================================== */
+
+    /**
+     * Create a new {@link SnapshotConfigurations} instance
+     * <em>memory-mapping</em> the snapshot in the specified {@link File}.
+     */
+    public SnapshotConfigurations(File file)
+    throws IOException, ConfigurationsException {
+        this(map(file));
+    }
+
+    /**
+     * Create a new {@link SnapshotConfigurations} instance reading the
+     * snapshot contained in the specified {@link ByteBuffer}, from its
+     * current position to its limit.
+     *
+     * <p>The contents of the buffer are not copied, and must not be changed
+     * after construction.</p>
+     */
+    public SnapshotConfigurations(ByteBuffer buffer)
+    throws ConfigurationsException {
+        if (buffer == null) throw new NullPointerException("Null buffer");
+
+        /* Slices are big-endian and start at zero, whatever the original */
+        this.buffer = buffer.slice();
+        if (this.buffer.limit() < HEADER) throw new ConfigurationsException("Snapshot too short (" + this.buffer.limit() + " bytes)");
+        if (this.buffer.getInt(0) != MAGIC) throw new ConfigurationsException("Invalid snapshot (wrong magic)");
+
+        final int version = this.buffer.getInt(4);
+        if (version != VERSION) throw new ConfigurationsException("Unsupported snapshot version " + version);
+
+        count = this.buffer.getInt(8);
+        final long pool = HEADER + ((long) count * RECORD);
+        if ((count < 0) || (pool > this.buffer.limit()))
+            throw new ConfigurationsException("Snapshot corrupted (" + count + " mappings in " + this.buffer.limit() + " bytes)");
+        this.pool = (int) pool;
+    }
+
+    /* Memory-map a file, read only */
+    private static final ByteBuffer map(File file)
+    throws IOException, ConfigurationsException {
+        if (file == null) throw new NullPointerException("Null file");
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new ConfigurationsException("File " + file + " too big to be mapped (" + size + " bytes)");
+            return channel.map(MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /* ====================================================================== */
+    /* WRITING SNAPSHOTS                                                      */
+    /* ====================================================================== */
+
+    /**
+     * Write a snapshot of the specified {@link Configurations} to the
+     * specified {@link OutputStream}.
+     *
+     * <p>The {@link OutputStream} will be flushed, but not closed.</p>
+     */
+    public static final void write(Configurations configurations, OutputStream output)
+    throws IOException, ConfigurationsException {
+        if (configurations == null) throw new NullPointerException("Null configurations");
+        if (output == null) throw new NullPointerException("Null output stream");
+
+        /* Our mappings, already sorted by key */
+        final Collection<Entry<String, String>> entries = configurations.snapshot().entries("");
+        final int[] records = new int[entries.size() * 4];
+
+        /* Fill up our pool, storing identical values only once */
+        final long fixed = HEADER + ((long) entries.size() * RECORD);
+        final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        final Map<String, Integer> offsets = new HashMap<>();
+        int record = 0;
+        for (Entry<String, String> entry: entries) {
+            final String key = entry.getKey();
+            for (int x = 0; x < key.length(); x ++) {
+                if (key.charAt(x) < 0x80) continue;
+                throw new ConfigurationsException("Non-ASCII key \"" + key + "\" can not be written to snapshots");
+            }
+
+            /* Offsets are integers, and so is the size of a mapped file */
+            final byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            if (fixed + pool.size() + key.length() + value.length > Integer.MAX_VALUE)
+                throw new ConfigurationsException("Configurations too big for a snapshot");
+
+            records[record ++] = pool.size();
+            records[record ++] = key.length();
+            pool.write(key.getBytes(StandardCharsets.US_ASCII));
+
+            final Integer offset = offsets.get(entry.getValue());
+            if (offset == null) {
+                offsets.put(entry.getValue(), pool.size());
+                records[record ++] = pool.size();
+                pool.write(value);
+            } else {
+                records[record ++] = offset;
+            }
+            records[record ++] = value.length;
+        }
+
+        /* Header, records and pool */
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(entries.size());
+        for (int value: records) data.writeInt(value);
+        pool.writeTo(data);
+        data.flush();
+    }
+
+    /**
+     * Write a snapshot of the specified {@link Configurations} to the
+     * specified {@link File}.
+     *
+     * <p>The snapshot is written to a temporary file first, then moved in
+     * place <em>atomically</em>, so that processes which have already mapped
+     * the previous snapshot never see it changing underneath them.</p>
+     */
+    public static final void write(Configurations configurations, File file)
+    throws IOException, ConfigurationsException {
+        if (file == null) throw new NullPointerException("Null file");
+
+        final Path target = file.getAbsoluteFile().toPath();
+        final Path temporary = Files.createTempFile(target.getParent(), ".snapshot-", ".tmp");
+        try {
+            try (final OutputStream output = Files.newOutputStream(temporary)) {
+                write(configurations, output);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /* ====================================================================== */
+    /* SNAPSHOT ACCESS                                                        */
+    /* ====================================================================== */
+
+    /* Return the absolute position of a string in our pool, checking bounds */
+    private int position(int offset, int length) {
+        final long position = (long) pool + offset;
+        if ((offset >= 0) && (length >= 0) && (position + length <= buffer.limit())) return (int) position;
+        throw new ConfigurationsException("Snapshot corrupted (string at " + offset + " of " + length + " bytes out of bounds)");
+    }
+
+    /* Decode a string from our pool */
+    private String string(int record, int field) {
+        final int offset = buffer.getInt(record + field);
+        final int length = buffer.getInt(record + field + 4);
+        final int position = position(offset, length);
+
+        final byte[] bytes = new byte[length];
+        buffer.duplicate().position(position).get(bytes);
+        return new String(bytes, field == KEY ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8);
+    }
+
+    /* The position of the record with the specified index */
+    private static int record(int index) {
+        return HEADER + (index * RECORD);
+    }
+
+    /* Compare the key of a record with a string, as String.compareTo would */
+    private int compare(int index, String key) {
+        final int record = record(index);
+        final int length = buffer.getInt(record + 4);
+        final int position = position(buffer.getInt(record), length);
+
+        final int limit = Math.min(length, key.length());
+        for (int x = 0; x < limit; x ++) {
+            final int difference = (buffer.get(position + x) & 0xFF) - key.charAt(x);
+            if (difference != 0) return difference;
+        }
+        return length - key.length();
+    }
+
+    /* Compare the key of a record with a prefix, zero if it starts with it */
+    private int comparePrefix(int index, String prefix) {
+        final int record = record(index);
+        final int length = buffer.getInt(record + 4);
+        final int position = position(buffer.getInt(record), length);
+
+        final int limit = Math.min(length, prefix.length());
+        for (int x = 0; x < limit; x ++) {
+            final int difference = (buffer.get(position + x) & 0xFF) - prefix.charAt(x);
+            if (difference != 0) return difference;
+        }
+        return length < prefix.length() ? -1 : 0;
+    }
+
+    /* Binary search for a key, as Arrays.binarySearch would */
+    private int indexOf(String key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = compare(middle, key);
+            if (comparison < 0) low = middle + 1;
+            else if (comparison > 0) high = middle - 1;
+            else return middle;
+        }
+        return -(low + 1);
+    }
+
+    /* ====================================================================== */
+    /* IMPLEMENTATION                                                         */
+    /* ====================================================================== */
+
+    /**
+     * Returns <b>true</b> if this instance contains a mapping for the
+     * specified key.
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return (key instanceof String) && (indexOf((String) key) >= 0);
+    }
+
+    /**
+     * Return the value of associated with the given <em>key</em> as a
+     * {@link String} or the specified <em>default value</em> if no mapping
+     * was found.
+     */
+    @Override
+    public final String getString(Object key, String defaultValue) {
+        final String string = key == null ? "" : ((String) key).trim();
+        final int index = indexOf(string);
+        return index < 0 ? defaultValue : string(record(index), VALUE);
+    }
+
+    /**
+     * Return <b>null</b> or fail with a {@link UnsupportedOperationException}
+     * if a value exists for the specified <em>key</em>, as snapshots never
+     * contain {@link Password}s.
+     */
+    @Override
+    public Password getPassword(Object key) {
+        final String string = key == null ? "" : ((String) key).trim();
+        if (indexOf(string) < 0) return null;
+        throw new UnsupportedOperationException("The value for \"" + key + "\" can not be retrieved securely");
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this instance.
+     */
+    @Override
+    public final Set<Entry<String, String>> entrySet() {
+        return new Range(0, count);
+    }
+
+    /**
+     * Returns the number of key-value mappings in this instance.
+     */
+    @Override
+    public final int size() {
+        return count;
+    }
+
+    @Override
+    final int hash() {
+        /* Benign race: at worst we compute this twice */
+        if (hash == 0) hash = super.hash();
+        return hash;
+    }
+
+    @Override
+    final long fingerprint() {
+        /* Benign race: at worst we compute this twice */
+        if (fingerprint == 0) fingerprint = computeFingerprint();
+        return fingerprint;
+    }
+
+    /**
+     * Returns a {@link Collection} of all the mappings whose keys start with
+     * the specified {@link String}, sorted by key, looking them up in our
+     * sorted table.
+     */
+    @Override
+    final Collection<Entry<String, String>> entries(String start) {
+        /* The first key greater than or equal to "start" */
+        int low = indexOf(start);
+        if (low < 0) low = -low - 1;
+
+        /* Keys starting with "start" follow it, find the first one not */
+        int high = low;
+        for (int limit = count; high < limit; ) {
+            final int middle = (high + limit) >>> 1;
+            if (comparePrefix(middle, start) == 0) high = middle + 1;
+            else limit = middle;
+        }
+
+        /* Wrap our range */
+        return low == high ? Collections.emptySet() : new Range(low, high);
+    }
+
+    /* ====================================================================== */
+    /* SORTED TABLE RANGES                                                    */
+    /* ====================================================================== */
+
+    /* A range in our sorted table, as a set of lazily decoded entries */
+    private final class Range extends AbstractSet<Entry<String, String>> {
+
+        private final int low;
+        private final int high;
+
+        private Range(int low, int high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        public int size() {
+            return high - low;
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            if (!(object instanceof Entry)) return false;
+            final Entry<?, ?> entry = (Entry<?, ?>) object;
+            final Object key = entry.getKey();
+            if (!(key instanceof String)) return false;
+            final int index = indexOf((String) key);
+            return (index >= low) && (index < high) && string(record(index), VALUE).equals(entry.getValue());
+        }
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            return new Iterator<Entry<String, String>>() {
+
+                private int index = low;
+
+                @Override
+                public boolean hasNext() {
+                    return index < high;
+                }
+
+                @Override
+                public Entry<String, String> next() {
+                    if (index >= high) throw new NoSuchElementException();
+                    final int record = record(index ++);
+                    return new SimpleImmutableEntry<>(string(record, KEY), string(record, VALUE));
+                }
+            };
+        }
+    }
+}
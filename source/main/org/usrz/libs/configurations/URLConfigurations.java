@@ -54,21 +54,8 @@ public class URLConfigurations extends DelegateConfigurations {
 
         log.debug("Parsing configurations from URL %s", url);
 
-        final String name = url.toString();
-        final String file = url.getFile();
-        try {
-            final InputStream input = url.openStream();
-                try {
-                if (file.endsWith(".json"))
-                    return new JsonConfigurations(input);
-                else if (file.endsWith(".properties") || name.endsWith(".xml")) {
-                    return new PropertiesConfigurations(input);
-                } else {
-                    throw new IllegalArgumentException("URL \"" + name + "\" must end with \".json\", \".properties\", or \".xml\"");
-                }
-            } finally {
-                input.close();
-            }
+        try (final InputStream input = url.openStream()) {
+            return parse(url, input);
         } catch (IOException exception) {
             throw new ConfigurationsException("I/O error loading URL " + url, exception);
         } catch (Exception exception) {
@@ -76,4 +63,21 @@ public class URLConfigurations extends DelegateConfigurations {
         }
     }
 
+    /**
+     * Parse the contents of the specified {@link URL}, as read from the
+     * given {@link InputStream}, choosing a format from the URL's extension.
+     */
+    static final Configurations parse(URL url, InputStream input)
+    throws IOException, ConfigurationsException {
+        final String name = url.toString();
+        final String file = url.getFile();
+        if (file.endsWith(".json"))
+            return new JsonConfigurations(input);
+        else if (file.endsWith(".properties") || name.endsWith(".xml")) {
+            return new PropertiesConfigurations(input);
+        } else {
+            throw new IllegalArgumentException("URL \"" + name + "\" must end with \".json\", \".properties\", or \".xml\"");
+        }
+    }
+
 }
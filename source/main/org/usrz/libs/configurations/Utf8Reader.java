@@ -0,0 +1,231 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.util.Arrays;
+
+/**
+ * A {@link Reader} decoding <em>UTF-8</em> bytes incrementally, either
+ * from a {@link ByteBuffer} or from a {@link ReadableByteChannel}.
+ *
+ * <p>When reading from a {@link ByteBuffer}, characters are decoded
+ * straight from its contents (from its position to its limit) without
+ * intermediate copies, and the buffer itself will not be modified. When
+ * reading from a {@link ReadableByteChannel}, bytes are read in a small
+ * buffer, refilled as needed, and wiped when this reader is closed (at
+ * which point the buffer is kept around for the next reader created by the
+ * same thread).</p>
+ *
+ * <p>Malformed <em>UTF-8</em> sequences are replaced by the
+ * <code>U+FFFD</code> replacement character, as a decoding
+ * {@link InputStreamReader} would do.</p>
+ *
+ * <p>Channels are always read in <em>blocking</em> mode: non-blocking
+ * {@link SelectableChannel}s are rejected at construction, as they might
+ * return no bytes at all, over and over, until some are available.</p>
+ *
+ * <p>Closing this reader will <b>not</b> close the underlying channel.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+final class Utf8Reader extends Reader {
+
+    /* End of input, and the replacement character for malformed input */
+    private static final int EOF = -1;
+    private static final char REPLACEMENT = '\uFFFD';
+    /* Minimum code points for 2, 3 and 4 bytes sequences (no overlongs) */
+    private static final int[] MINIMUM = { 0, 0x80, 0x800, 0x10000 };
+    /* The size of our buffer when reading from channels */
+    private static final int BUFFER_SIZE = 8192;
+    /* Wiped channel buffers, one per thread, not there while in use */
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<>();
+    /* The (empty) buffer of a closed reader */
+    private static final ByteBuffer CLOSED = ByteBuffer.allocate(0);
+
+    /* The buffer we decode from, and the channel refilling it (if any) */
+    private ByteBuffer buffer;
+    private final ReadableByteChannel channel;
+    /* The low surrogate of a supplementary character, or EOF */
+    private int pending = EOF;
+    /* The highest limit of our own buffer, what to wipe */
+    private int used = 0;
+
+    /**
+     * Create a new {@link Utf8Reader} decoding the contents of the specified
+     * {@link ByteBuffer}, from its position to its limit.
+     */
+    Utf8Reader(ByteBuffer buffer) {
+        if (buffer == null) throw new NullPointerException("Null buffer");
+        this.buffer = buffer.duplicate();
+        channel = null;
+    }
+
+    /**
+     * Create a new {@link Utf8Reader} decoding the bytes read from the
+     * specified {@link ReadableByteChannel}.
+     *
+     * @throws IllegalBlockingModeException If the channel is a
+     *                                      {@link SelectableChannel} in
+     *                                      non-blocking mode.
+     */
+    Utf8Reader(ReadableByteChannel channel) {
+        if (channel == null) throw new NullPointerException("Null channel");
+        if ((channel instanceof SelectableChannel) && (!((SelectableChannel) channel).isBlocking()))
+            throw new IllegalBlockingModeException();
+        this.channel = channel;
+
+        /* Borrow this thread's buffer, if any */
+        final ByteBuffer buffer = BUFFERS.get();
+        if (buffer != null) BUFFERS.set(null);
+        this.buffer = buffer == null ? ByteBuffer.allocate(BUFFER_SIZE) : buffer;
+        this.buffer.clear().flip(); // empty, ready to be refilled
+    }
+
+    /* ====================================================================== */
+
+    @Override
+    public int read(char[] chars, int offset, int length)
+    throws IOException {
+        if ((offset < 0) || (length < 0) || (length > chars.length - offset))
+            throw new IndexOutOfBoundsException();
+        if (length == 0) return 0;
+
+        int count = 0;
+        while (count < length) {
+            /* Plain ASCII, most likely, straight from the buffer */
+            if (pending == EOF) {
+                final int position = buffer.position();
+                final int limit = position + Math.min(length - count, buffer.remaining());
+                int current = position;
+                while (current < limit) {
+                    final byte b = buffer.get(current);
+                    if (b < 0) break;
+                    chars[offset + count ++] = (char) b;
+                    current ++;
+                }
+                buffer.position(current);
+                if (count == length) break;
+            }
+
+            /* Never block on our channel if we have something to return */
+            if ((count > 0) && (pending == EOF) && (!buffer.hasRemaining())) break;
+
+            final int c = read();
+            if (c == EOF) break;
+            chars[offset + count ++] = (char) c;
+        }
+
+        return count == 0 ? EOF : count;
+    }
+
+    /**
+     * Read (decode) a single character, or <code>-1</code> at the end of the
+     * input.
+     */
+    @Override
+    public int read()
+    throws IOException {
+        /* Second half of a surrogate pair */
+        if (pending != EOF) {
+            final int c = pending;
+            pending = EOF;
+            return c;
+        }
+
+        /* The first byte, most likely ASCII */
+        if (!(buffer.hasRemaining() || refill())) return EOF;
+        final int b = buffer.get();
+        if (b >= 0) return b;
+
+        /* The length of the sequence, and the first bits of the code point */
+        final int length;
+        int code;
+        if ((b & 0xE0) == 0xC0) {
+            length = 1;
+            code = b & 0x1F;
+        } else if ((b & 0xF0) == 0xE0) {
+            length = 2;
+            code = b & 0x0F;
+        } else if ((b & 0xF8) == 0xF0) {
+            length = 3;
+            code = b & 0x07;
+        } else {
+            return REPLACEMENT;
+        }
+
+        /* Continuation bytes, which we don't consume if invalid */
+        for (int x = 0; x < length; x ++) {
+            if (!(buffer.hasRemaining() || refill())) return REPLACEMENT;
+            final int position = buffer.position();
+            final int next = buffer.get(position);
+            if ((next & 0xC0) != 0x80) return REPLACEMENT;
+            buffer.position(position + 1);
+            code = (code << 6) | (next & 0x3F);
+        }
+
+        /* No overlong encodings, surrogates or out of range values */
+        if ((code < MINIMUM[length]) || (code > Character.MAX_CODE_POINT)) return REPLACEMENT;
+        if ((code >= Character.MIN_SURROGATE) && (code <= Character.MAX_SURROGATE)) return REPLACEMENT;
+        if (code < Character.MIN_SUPPLEMENTARY_CODE_POINT) return code;
+
+        pending = Character.lowSurrogate(code);
+        return Character.highSurrogate(code);
+    }
+
+    /**
+     * Wipe and return our own buffer, if reading from a channel, which is
+     * left open.
+     */
+    @Override
+    public void close() {
+        if ((channel == null) || (buffer == CLOSED)) return;
+        Arrays.fill(buffer.array(), 0, used, (byte) 0);
+        BUFFERS.set(buffer);
+        buffer = CLOSED; // never touch (or return) it again
+    }
+
+    /* The (wiped) buffer kept around for this thread, if any, for tests */
+    static ByteBuffer pooled() {
+        return BUFFERS.get();
+    }
+
+    /* ====================================================================== */
+
+    /* Read more bytes from our channel, returning false at the end */
+    private boolean refill()
+    throws IOException {
+        if (channel == null) return false;
+        if (buffer == CLOSED) throw new IOException("Reader closed");
+
+        buffer.compact();
+        try {
+            /* Blocking channels return 0 only for an empty buffer, never here */
+            int read = 0;
+            while (read == 0) read = channel.read(buffer);
+            return read > 0;
+        } finally {
+            if (used < buffer.position()) used = buffer.position();
+            buffer.flip();
+        }
+    }
+}
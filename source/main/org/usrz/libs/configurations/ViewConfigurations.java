@@ -0,0 +1,333 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Configurations} implementation providing a <em>view</em> over
+ * the mappings of another (parent) {@link Configurations} instance, with
+ * keys <em>prefixed</em>, <em>stripped</em>, <em>extracted</em> or
+ * <em>removed</em>.
+ *
+ * <p>No mappings are ever copied: lookups are translated into lookups on
+ * the parent instance, and iteration is delegated to the parent's
+ * {@linkplain Configurations#entries(String) entries by prefix}.</p>
+ *
+ * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
+ */
+abstract class ViewConfigurations extends Configurations {
+
+    /* The parent configurations */
+    final Configurations parent;
+    /* The prefix, without and with the trailing dot */
+    final String prefix;
+    final String prefixDot;
+
+    /* Lazily computed size */
+    private volatile int size = -1;
+
+    private ViewConfigurations(Configurations parent, String prefix) {
+        this.parent = parent;
+        this.prefix = prefix;
+        prefixDot = prefix + ".";
+    }
+
+    /* ====================================================================== */
+
+    /**
+     * Translate the specified key (from this instance) into the key to look
+     * up in the parent, or return <b>null</b> if this view has no mapping.
+     */
+    abstract String parentKey(String key);
+
+    /* ====================================================================== */
+
+    @Override
+    protected Configurations wrap(Map<?, ?> map) {
+        return parent.wrap(map);
+    }
+
+    @Override
+    public String getString(Object key, String defaultValue) {
+        final String parentKey = translate(key);
+        return parentKey == null ? defaultValue : parent.getString(parentKey, defaultValue);
+    }
+
+    @Override
+    public Password getPassword(Object key) {
+        final String parentKey = translate(key);
+        return parentKey == null ? null : parent.getPassword(parentKey);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        final String parentKey = translate(key);
+        return parentKey == null ? false : parent.containsKey(parentKey);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return entries("").iterator();
+            }
+
+            @Override
+            public boolean contains(Object object) {
+                if (!(object instanceof Entry)) return false;
+                final Entry<?, ?> entry = (Entry<?, ?>) object;
+                final Object value = entry.getValue();
+                return value != null && value.equals(getString(entry.getKey(), null));
+            }
+
+            @Override
+            public int size() {
+                return ViewConfigurations.this.size();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        /* Benign race: at worst we compute this twice */
+        if (size < 0) size = entries("").size();
+        return size;
+    }
+
+    /* ====================================================================== */
+
+    /* Normalize a key as MappedConfigurations would do, then translate it */
+    private String translate(Object key) {
+        if (key == null) return parentKey("");
+        if (key instanceof String) return parentKey(((String) key).trim());
+        return null;
+    }
+
+    /* ====================================================================== */
+    /* PREFIXED VIEW                                                          */
+    /* ====================================================================== */
+
+    /**
+     * A view adding a prefix to all the keys of its parent.
+     *
+     * @see Configurations#prefix(String)
+     */
+    static final class Prefixed extends ViewConfigurations {
+
+        Prefixed(Configurations parent, String prefix) {
+            super(parent, prefix);
+        }
+
+        @Override
+        String parentKey(String key) {
+            if (key.startsWith(prefixDot)) return key.substring(prefixDot.length());
+            return key.equals(prefix) ? "" : null;
+        }
+
+        @Override
+        Collection<Entry<String, String>> entries(String start) {
+            /* The parent's empty key maps to our prefix, never prefixed with a dot */
+            final String exact = parent.getString("", null);
+
+            if (start.startsWith(prefixDot)) {
+                final String parentStart = start.substring(prefixDot.length());
+                final boolean skipEmpty = (exact != null) && (parentStart.length() == 0);
+                return new Entries(null, parent.entries(parentStart), prefixDot, 0, skipEmpty);
+            }
+            if (!prefixDot.startsWith(start)) return Collections.emptySet();
+
+            final Entry<String, String> entry = exact == null ? null : new SimpleImmutableEntry<>(prefix, exact);
+            return new Entries(entry, parent.entries(""), prefixDot, 0, exact != null);
+        }
+    }
+
+    /* ====================================================================== */
+    /* EXTRACTED VIEW                                                         */
+    /* ====================================================================== */
+
+    /**
+     * A view exposing only the mappings of its parent whose keys are equal
+     * to, or start with, a given prefix.
+     *
+     * @see Configurations#extract(String)
+     */
+    static final class Extracted extends ViewConfigurations {
+
+        Extracted(Configurations parent, String prefix) {
+            super(parent, prefix);
+        }
+
+        @Override
+        String parentKey(String key) {
+            return key.equals(prefix) || key.startsWith(prefixDot) ? key : null;
+        }
+
+        @Override
+        Collection<Entry<String, String>> entries(String start) {
+            if (start.startsWith(prefixDot)) return parent.entries(start);
+            if (!prefixDot.startsWith(start)) return Collections.emptySet();
+
+            final String exact = prefix.startsWith(start) ? parent.getString(prefix, null) : null;
+            final Entry<String, String> entry = exact == null ? null : new SimpleImmutableEntry<>(prefix, exact);
+            return new Entries(entry, parent.entries(prefixDot), "", 0, false);
+        }
+    }
+
+    /* ====================================================================== */
+    /* STRIPPED VIEW                                                          */
+    /* ====================================================================== */
+
+    /**
+     * A view exposing only the mappings of its parent whose keys are equal
+     * to, or start with, a given prefix, with said prefix removed.
+     *
+     * @see Configurations#strip(String)
+     */
+    static final class Stripped extends ViewConfigurations {
+
+        Stripped(Configurations parent, String prefix) {
+            super(parent, prefix);
+        }
+
+        @Override
+        String parentKey(String key) {
+            return key.length() == 0 ? prefix : prefixDot + key;
+        }
+
+        @Override
+        Collection<Entry<String, String>> entries(String start) {
+            final Collection<Entry<String, String>> entries = parent.entries(prefixDot + start);
+            if (start.length() > 0) return new Entries(null, entries, "", prefixDot.length(), false);
+
+            final String exact = parent.getString(prefix, null);
+            final Entry<String, String> entry = exact == null ? null : new SimpleImmutableEntry<>("", exact);
+            return new Entries(entry, entries, "", prefixDot.length(), false);
+        }
+    }
+
+    /* ====================================================================== */
+    /* REMOVED VIEW                                                           */
+    /* ====================================================================== */
+
+    /**
+     * A view hiding some of the mappings of its parent, as when overriding
+     * them with <b>null</b> or empty values.
+     *
+     * @see Configurations#override(Map)
+     */
+    static final class Removed extends ViewConfigurations {
+
+        /* The (normalized) keys whose mappings we hide */
+        private final Set<String> removed;
+
+        Removed(Configurations parent, Set<String> removed) {
+            super(parent, "");
+            this.removed = removed;
+        }
+
+        @Override
+        String parentKey(String key) {
+            return removed.contains(key) ? null : key;
+        }
+
+        @Override
+        Collection<Entry<String, String>> entries(String start) {
+            final List<Entry<String, String>> entries = new ArrayList<>();
+            for (Entry<String, String> entry: parent.entries(start)) {
+                if (!removed.contains(entry.getKey())) entries.add(entry);
+            }
+            return entries;
+        }
+    }
+
+    /* ====================================================================== */
+    /* ENTRIES COLLECTION                                                     */
+    /* ====================================================================== */
+
+    /**
+     * A {@link Collection} of entries made of an optional <em>first</em>
+     * entry followed by the entries from the parent, re-keyed by adding a
+     * prefix and/or stripping a number of characters, and optionally
+     * skipping the parent's entry for the <em>empty</em> key.
+     */
+    private static final class Entries extends AbstractCollection<Entry<String, String>> {
+
+        private final Entry<String, String> first;
+        private final Collection<Entry<String, String>> entries;
+        private final String add;
+        private final int strip;
+        private final boolean skipEmpty;
+
+        private Entries(Entry<String, String> first, Collection<Entry<String, String>> entries, String add, int strip, boolean skipEmpty) {
+            this.first = first;
+            this.entries = entries;
+            this.add = add;
+            this.strip = strip;
+            this.skipEmpty = skipEmpty;
+        }
+
+        @Override
+        public int size() {
+            return entries.size() + (first == null ? 0 : 1) - (skipEmpty ? 1 : 0);
+        }
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            final Iterator<Entry<String, String>> iterator = entries.iterator();
+            return new Iterator<Entry<String, String>>() {
+
+                private Entry<String, String> next = first != null ? first : advance();
+
+                private Entry<String, String> advance() {
+                    while (iterator.hasNext()) {
+                        final Entry<String, String> entry = iterator.next();
+                        final String key = entry.getKey();
+                        if (skipEmpty && (key.length() == 0)) continue;
+                        if ((strip == 0) && (add.length() == 0)) return entry;
+                        return new SimpleImmutableEntry<>(add + key.substring(strip), entry.getValue());
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Entry<String, String> next() {
+                    if (next == null) throw new NoSuchElementException();
+                    final Entry<String, String> current = next;
+                    next = advance();
+                    return current;
+                }
+            };
+        }
+    }
+}
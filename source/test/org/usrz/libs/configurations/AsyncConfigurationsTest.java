@@ -0,0 +1,102 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+import org.usrz.libs.testing.AbstractTest;
+import org.usrz.libs.testing.IO;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class AsyncConfigurationsTest extends AbstractTest {
+
+    @Test
+    public void testAsync()
+    throws Exception {
+        final Configurations properties = new ResourceConfigurations("test.properties");
+        final Configurations json = new ResourceConfigurations("test.json");
+
+        final File file = File.createTempFile("async-", ".json");
+        file.deleteOnExit();
+        Files.copy(IO.resource("test.json"), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        final byte[] body;
+        try (InputStream input = IO.resource("test.properties")) {
+            body = input.readAllBytes();
+        }
+
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/test.properties", (exchange) -> {
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            final URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/test.properties");
+            assertEquals(AsyncConfigurations.file(file).get(30, TimeUnit.SECONDS), json);
+            assertEquals(AsyncConfigurations.url(url).get(30, TimeUnit.SECONDS), properties);
+            assertEquals(AsyncConfigurations.url(file.toURI().toURL()).get(30, TimeUnit.SECONDS), json);
+            assertEquals(AsyncConfigurations.resource(getClass(), "test.properties").get(30, TimeUnit.SECONDS), properties);
+            assertTrue(AsyncConfigurations.resource(getClass(), "test.properties").get(30, TimeUnit.SECONDS) instanceof PropertiesConfigurations);
+            assertTrue(AsyncConfigurations.file(file).get(30, TimeUnit.SECONDS) instanceof JsonConfigurations);
+            assertEquals(AsyncConfigurations.defaults(getClass()).get(30, TimeUnit.SECONDS), new DefaultConfigurations(getClass()));
+
+            /* Ten sources, loaded concurrently, the first one winning */
+            final List<CompletableFuture<Configurations>> futures = new ArrayList<>();
+            futures.add(AsyncConfigurations.resource(getClass(), "test.json"));
+            for (int x = 0; x < 9; x ++) futures.add(AsyncConfigurations.url(url));
+            assertEquals(AsyncConfigurations.merge(futures).get(30, TimeUnit.SECONDS), json.merge(properties));
+            assertEquals(AsyncConfigurations.merge(AsyncConfigurations.url(url), AsyncConfigurations.file(file)).get(30, TimeUnit.SECONDS), properties.merge(json));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testAsyncFailures()
+    throws Exception {
+        final CompletableFuture<Configurations> missing = AsyncConfigurations.file(new File("missing.properties"));
+        final CompletableFuture<Configurations> merged = AsyncConfigurations.merge(AsyncConfigurations.resource(getClass(), "test.json"), missing);
+        final CompletableFuture<Configurations> resource = AsyncConfigurations.resource(getClass(), "missing.json");
+
+        for (CompletableFuture<Configurations> future: Arrays.asList(missing, merged, resource)) {
+            try {
+                future.get(30, TimeUnit.SECONDS);
+                fail("Exception not thrown");
+            } catch (ExecutionException exception) {
+                assertTrue(exception.getCause() instanceof ConfigurationsException, exception.getCause().toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.testng.annotations.Test;
+import org.usrz.libs.testing.AbstractTest;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class CachingURLConfigurationsTest extends AbstractTest {
+
+    @Test
+    public void testCaching()
+    throws Exception {
+        final File directory = Files.createTempDirectory("cache-").toFile();
+
+        final List<String> requests = new CopyOnWriteArrayList<>();
+        final AtomicReferenceArray<String> document = new AtomicReferenceArray<>(new String[] { "message = hello\n", "\"v1\"" });
+        final HttpServer server = serve(document, requests);
+
+        final URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/test.properties");
+        try {
+            /* First fetch, unconditional */
+            assertEquals(new CachingURLConfigurations(url, directory).get("message"), "hello");
+            assertEquals(requests.remove(0), "null");
+
+            /* Second fetch, not modified */
+            assertEquals(new CachingURLConfigurations(url, directory).get("message"), "hello");
+            assertEquals(requests.remove(0), "\"v1\"");
+
+            /* Changed on the server */
+            document.set(0, "message = goodbye\n");
+            document.set(1, "\"v2\"");
+            assertEquals(new CachingURLConfigurations(url, directory).get("message"), "goodbye");
+            assertEquals(requests.remove(0), "\"v1\"");
+
+            /* Cold start: validators come from disk */
+            CachingURLConfigurations.cache.clear();
+            assertEquals(new CachingURLConfigurations(url, directory).get("message"), "goodbye");
+            assertEquals(requests.remove(0), "\"v2\"");
+        } finally {
+            server.stop(0);
+        }
+
+        /* Cold start with the server down: body comes from disk */
+        CachingURLConfigurations.cache.clear();
+        assertEquals(new CachingURLConfigurations(url, directory).get("message"), "goodbye");
+        assertTrue(requests.isEmpty());
+
+        /* Nothing cached in another directory, nothing to return */
+        final File other = new File(directory, "other");
+        try {
+            new CachingURLConfigurations(url, other);
+            fail("Exception not thrown");
+        } catch (ConfigurationsException exception) {
+            /* Server is down */
+        }
+
+        /* Directories writable by others are never trusted */
+        Files.setPosixFilePermissions(directory.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+        CachingURLConfigurations.cache.clear();
+        try {
+            new CachingURLConfigurations(url, directory);
+            fail("Exception not thrown");
+        } catch (ConfigurationsException exception) {
+            /* Server is down, and our cache is not trusted */
+        } finally {
+            for (File file: directory.listFiles()) file.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testRefreshing()
+    throws Exception {
+        final File directory = Files.createTempDirectory("cache-").toFile();
+        final List<String> requests = new CopyOnWriteArrayList<>();
+        final AtomicReferenceArray<String> document = new AtomicReferenceArray<>(new String[] { "message = hello\nkept = value\n", "\"v1\"" });
+        final HttpServer server = serve(document, requests);
+
+        final URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/test.properties");
+        final LinkedBlockingQueue<ConfigurationsDiff> changes = new LinkedBlockingQueue<>();
+        try (RefreshingURLConfigurations configurations = new RefreshingURLConfigurations(url, Duration.ofMillis(50), directory, RefreshingURLConfigurations.DEFAULT_EXECUTOR)) {
+            final List<String> threads = new CopyOnWriteArrayList<>();
+            configurations.addListener((current, diff) -> {
+                threads.add(Thread.currentThread().getName());
+                changes.add(diff);
+            });
+            final Configurations snapshot = configurations.snapshot();
+            assertEquals(configurations.get("message"), "hello");
+
+            /* Unchanged, only conditional requests */
+            while (requests.size() < 3) Thread.sleep(10);
+            assertTrue(changes.isEmpty());
+            assertEquals(requests.get(2), "\"v1\"");
+            assertSame(configurations.snapshot(), snapshot);
+
+            /* Changed on the server */
+            document.set(0, "message = goodbye\nkept = value\n");
+            document.set(1, "\"v2\"");
+            final ConfigurationsDiff diff = changes.poll(30, TimeUnit.SECONDS);
+            assertNotNull(diff, "No changes notified");
+            assertEquals(diff.getChanged().toArray(), new String[] { "message" });
+            assertTrue(threads.get(0).startsWith("Configurations refresher #"), "Notified from " + threads.get(0));
+            assertEquals(configurations.get("message"), "goodbye");
+            assertEquals(snapshot.get("message"), "hello");
+        } finally {
+            server.stop(0);
+            for (File file: directory.listFiles()) file.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testRefreshingInterval()
+    throws Exception {
+        final File directory = Files.createTempDirectory("cache-").toFile();
+        final URL url = getClass().getResource("test.properties");
+        try {
+            /* Intervals are in milliseconds, never spin with a zero delay */
+            for (Duration interval: new Duration[] { Duration.ZERO, Duration.ofMillis(-1), Duration.ofNanos(999999) }) try {
+                new RefreshingURLConfigurations(url, interval, directory).close();
+                fail("Exception not thrown for " + interval);
+            } catch (IllegalArgumentException exception) {
+                /* Invalid interval */
+            }
+            new RefreshingURLConfigurations(url, Duration.ofMillis(1), directory).close();
+        } finally {
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testRefreshingStalled()
+    throws Exception {
+        final File directory = Files.createTempDirectory("cache-").toFile();
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+        /* A server answering once, then never again until released */
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger stalled = new AtomicInteger();
+        final HttpServer slow = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        slow.createContext("/test.properties", (exchange) -> {
+            if (stalled.getAndIncrement() > 0) try {
+                latch.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            final byte[] body = "message = slow\n".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+            exchange.close();
+        });
+        slow.start();
+
+        final List<String> requests = new CopyOnWriteArrayList<>();
+        final HttpServer fast = serve(new AtomicReferenceArray<>(new String[] { "message = fast\n", "\"v1\"" }), requests);
+
+        final URL slowURL = new URL("http://127.0.0.1:" + slow.getAddress().getPort() + "/test.properties");
+        final URL fastURL = new URL("http://127.0.0.1:" + fast.getAddress().getPort() + "/test.properties");
+        try (RefreshingURLConfigurations stuck = new RefreshingURLConfigurations(slowURL, Duration.ofMillis(10), directory, executor);
+             RefreshingURLConfigurations healthy = new RefreshingURLConfigurations(fastURL, Duration.ofMillis(50), directory, executor)) {
+            assertEquals(stuck.get("message"), "slow");
+            assertEquals(healthy.get("message"), "fast");
+
+            /* The stalled server must not hold up our only executor thread */
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while ((stalled.get() < 2) && (System.nanoTime() < deadline)) Thread.sleep(10);
+            assertTrue(stalled.get() >= 2, "Stalled server not refreshed");
+            final int before = requests.size();
+            while ((requests.size() < before + 5) && (System.nanoTime() < deadline)) Thread.sleep(10);
+            assertTrue(requests.size() >= before + 5, "Healthy server not refreshed");
+            assertEquals(stalled.get(), 2);
+        } finally {
+            latch.countDown();
+            slow.stop(0);
+            fast.stop(0);
+            executor.shutdownNow();
+            for (File file: directory.listFiles()) file.delete();
+            directory.delete();
+        }
+    }
+
+    /* Serve a document (body and ETag), recording conditional requests */
+    private static HttpServer serve(AtomicReferenceArray<String> document, List<String> requests)
+    throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/test.properties", (exchange) -> {
+            final String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            requests.add(String.valueOf(etag));
+            exchange.getResponseHeaders().set("ETag", document.get(1));
+            if (document.get(1).equals(etag)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                final byte[] body = document.get(0).getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+}
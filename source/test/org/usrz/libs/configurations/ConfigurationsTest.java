@@ -21,10 +21,18 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import org.testng.annotations.Test;
 import org.usrz.libs.testing.AbstractTest;
+import org.usrz.libs.testing.IO;
 
 public class ConfigurationsTest extends AbstractTest {
 
@@ -96,6 +104,39 @@ public class ConfigurationsTest extends AbstractTest {
 
     }
 
+    @Test
+    public void testCaching()
+    throws Exception {
+        final Configurations configurations = new CachingConfigurations(new ResourceConfigurations("test.properties"));
+
+        assertSame(configurations.getURL("value.url"), configurations.getURL("value.url"));
+        assertSame(configurations.getURI("value.uri"), configurations.getURI("value.uri"));
+        assertEquals(configurations.get("value.integer", 456), 123);
+        assertEquals(configurations.getInteger("value.integer"), new Integer(123));
+        assertEquals(configurations.get("value.boolean", false), true);
+        assertNull(configurations.getURL("value.missing"));
+        assertEquals(configurations.get("value.missing", 456), 456);
+    }
+
+    @Test
+    public void testCachingReloadable()
+    throws Exception {
+        final ReloadableConfigurations reloadable = new ReloadableConfigurations(new ConfigurationsBuilder().put("value", 1).build()) {
+            @Override
+            public void close() {
+                /* Nothing to do */
+            }
+        };
+        final Configurations configurations = new CachingConfigurations(reloadable);
+
+        assertEquals(configurations.get("value", 0), 1);
+        assertEquals(configurations.get("value", 0), 1);
+
+        /* Reloaded, converted again */
+        reloadable.update(new ConfigurationsBuilder().put("value", 2).build());
+        assertEquals(configurations.get("value", 0), 2);
+    }
+
     @Test
     public void testMerge()
     throws Exception {
@@ -132,6 +173,86 @@ public class ConfigurationsTest extends AbstractTest {
         assertEquals(overridden.get("value.merge",  "wrong string"), "this is good");
     }
 
+    @Test
+    public void testOverrideRemoving()
+    throws Exception {
+        final Configurations configurations = new ConfigurationsBuilder().put("a", "1").put("b", "2").put("c.d", "3").build();
+
+        final Map<String, Object> map = new HashMap<>();
+        map.put("a", "  ");
+        map.put("c.d", null);
+        map.put("e", "5");
+        final Configurations overridden = configurations.override(map);
+
+        assertNull(overridden.get("a"));
+        assertFalse(overridden.containsKey("c.d"));
+        assertNull(overridden.strip("c").get(null));
+        assertEquals(overridden.get("b"), "2");
+        assertEquals(overridden.get("e"), "5");
+        assertEquals(overridden.size(), 2);
+        assertEquals(overridden, new ConfigurationsBuilder().put("b", "2").put("e", "5").build());
+
+        /* Only hidden in the overridden configurations, not in what they are merged with */
+        assertEquals(overridden.merge(configurations), configurations.override(new ConfigurationsBuilder().put("e", "5").build()));
+    }
+
+    @Test
+    public void testLayered()
+    throws Exception {
+        final Configurations top = new ConfigurationsBuilder().put("a", "top a").build();
+        final Configurations middle = new ConfigurationsBuilder().put("a", "middle a").put("b", "middle b").build();
+        final Configurations bottom = new ConfigurationsBuilder().put("b", "bottom b").put("c", "bottom c").build();
+
+        final Configurations layered = new LayeredConfigurations(top, new LayeredConfigurations(middle, bottom));
+
+        assertEquals(layered.get("a"), "top a");
+        assertEquals(layered.get("b"), "middle b");
+        assertEquals(layered.get("c"), "bottom c");
+        assertNull(layered.get("d"));
+        assertTrue(layered.containsKey("c"));
+        assertFalse(layered.containsKey("d"));
+
+        assertEquals(layered, new ConfigurationsBuilder().put("a", "top a")
+                                                         .put("b", "middle b")
+                                                         .put("c", "bottom c")
+                                                         .build());
+        assertEquals(layered.size(), 3);
+
+        /* Merging and overriding layer, without copying */
+        assertEquals(top.merge(middle).merge(bottom), layered);
+        assertEquals(bottom.override(middle).override(top), layered);
+        assertEquals(bottom.override(middle).override(top).strip("b").get(null), "middle b");
+    }
+
+    @Test
+    public void testLayeredSecrets()
+    throws Exception {
+        final Configurations file = new PropertiesConfigurations(new ByteArrayInputStream("db.password = s3cret\ndb.user = app\n".getBytes(StandardCharsets.UTF_8)), (key) -> key.endsWith("password"));
+        final Configurations defaults = new ConfigurationsBuilder().put("db.password", "changeme")
+                                                                   .put("db.host", "localhost")
+                                                                   .build();
+
+        for (Configurations layered: new Configurations[] { file.merge(defaults), defaults.override(file) }) {
+            /* Secrets on top hide plain defaults for the same key */
+            assertEquals(new String(layered.getPassword("db.password").get()), "s3cret");
+            assertNull(layered.get("db.password"));
+            assertEquals(layered.get("db.password", "default"), "default");
+            assertFalse(layered.containsKey("db.password"));
+            assertFalse(layered.keySet().contains("db.password"));
+            assertFalse(layered.values().contains("changeme"));
+            assertEquals(layered.size(), 2);
+            assertEquals(layered, new ConfigurationsBuilder().put("db.user", "app")
+                                                             .put("db.host", "localhost")
+                                                             .build());
+        }
+
+        /* Plain values on top still win over lower secrets */
+        final Configurations plain = defaults.merge(file);
+        assertEquals(plain.get("db.password"), "changeme");
+        assertTrue(plain.containsKey("db.password"));
+        assertEquals(plain.size(), 3);
+    }
+
     @Test
     public void testPrefix()
     throws Exception {
@@ -181,6 +302,50 @@ public class ConfigurationsTest extends AbstractTest {
         assertNull(extracted.get("message"));
     }
 
+    @Test
+    public void testViews()
+    throws Exception {
+        final Configurations configurations = new ConfigurationsBuilder()
+                                .put("", "root")
+                                .put("a", "a")
+                                .put("a.b", "a.b")
+                                .put("a.b.c", "a.b.c")
+                                .put("a-b", "a-b")
+                                .put("b", "b")
+                                .build();
+
+        final Configurations prefixed = configurations.prefix("x.y.");
+        assertEquals(prefixed, new ConfigurationsBuilder()
+                                .put("x.y", "root")
+                                .put("x.y.a", "a")
+                                .put("x.y.a.b", "a.b")
+                                .put("x.y.a.b.c", "a.b.c")
+                                .put("x.y.a-b", "a-b")
+                                .put("x.y.b", "b")
+                                .build());
+        assertEquals(prefixed.strip("x").strip("y"), configurations);
+        assertEquals(prefixed.strip("x.y").hashCode(), configurations.hashCode());
+
+        final Configurations stripped = configurations.strip("a");
+        assertEquals(stripped, new ConfigurationsBuilder()
+                                .put("", "a")
+                                .put("b", "a.b")
+                                .put("b.c", "a.b.c")
+                                .build());
+        assertEquals(stripped.size(), 3);
+        assertTrue(stripped.containsKey("b.c"));
+        assertFalse(stripped.containsKey("a.b"));
+
+        final Configurations extracted = configurations.extract("a");
+        assertEquals(extracted, new ConfigurationsBuilder()
+                                .put("a", "a")
+                                .put("a.b", "a.b")
+                                .put("a.b.c", "a.b.c")
+                                .build());
+        assertNull(extracted.get("a-b"));
+        assertEquals(extracted.extract("a.b").strip("a").size(), 2);
+    }
+
     @Test
     public void testGroup()
     throws IOException, ConfigurationsException {
@@ -286,4 +451,123 @@ public class ConfigurationsTest extends AbstractTest {
             throw exception.getCause(); // unwrap cause
         }
     }
+
+    @Test
+    public void testKeyValidation() {
+        for (String key: new String[] { "", "a", "a.b", "a-b.$c_d.0", "A.Z.9" })
+            assertTrue(MappedConfigurations.isValidKey(key), "Key \"" + key + "\"");
+        for (String key: new String[] { ".", "a.", ".a", "a..b", "a b", "a~b", "caf\u00e9", " a" })
+            assertFalse(MappedConfigurations.isValidKey(key), "Key \"" + key + "\"");
+
+        final String key = "canonical.key";
+        assertSame(MappedConfigurations.validateKey(key), key);
+        assertEquals(MappedConfigurations.validateKey("  trimmed.key\t"), "trimmed.key");
+    }
+
+    @Test
+    public void testDiff() {
+        final Configurations previous = new ConfigurationsBuilder()
+                                              .put("db", "main")
+                                              .put("db.url", "jdbc:old")
+                                              .put("db.pool.size", 10)
+                                              .put("http.port", 8080)
+                                              .put("http.host", "localhost")
+                                              .put("cache.size", 100)
+                                              .build();
+        final Configurations current = new ConfigurationsBuilder()
+                                              .put("db", "main")
+                                              .put("db.url", "jdbc:new")
+                                              .put("db.pool.size", 10)
+                                              .put("http.port", 8080)
+                                              .put("http.host", "localhost")
+                                              .put("mail.host", "smtp")
+                                              .build();
+
+        final ConfigurationsDiff diff = previous.diff(current);
+        assertEquals(diff.getAdded().toArray(), new String[] { "mail.host" });
+        assertEquals(diff.getRemoved().toArray(), new String[] { "cache.size" });
+        assertEquals(diff.getChanged().toArray(), new String[] { "db.url" });
+        assertEquals(diff.getKeys().toArray(), new String[] { "cache.size", "db.url", "mail.host" });
+        assertFalse(diff.isEmpty());
+
+        /* Narrowing down to subtrees */
+        assertEquals(diff.strip("db").getChanged().toArray(), new String[] { "url" });
+        assertTrue(diff.strip("db.pool").isEmpty());
+        assertTrue(diff.strip("http").isEmpty());
+        assertEquals(previous.diff(current.override(new ConfigurationsBuilder().put("db", "other").build()))
+                             .strip("db").getChanged().toArray(), new String[] { "", "url" });
+
+        final Map<String, ConfigurationsDiff> groups = diff.group("");
+        assertEquals(groups.keySet().toArray(), new String[] { "cache", "db", "mail" });
+        assertEquals(groups.get("cache").getRemoved().toArray(), new String[] { "size" });
+
+        /* No differences */
+        assertTrue(previous.diff(previous).isEmpty());
+        assertTrue(current.diff(current.merge(previous.extract("cache"))).getChanged().isEmpty());
+        assertEquals(current.diff(previous).getAdded(), diff.getRemoved());
+        assertTrue(new ResourceConfigurations("test.properties").diff(new ResourceConfigurations("test.properties")).isEmpty());
+    }
+
+    @Test
+    public void testFingerprint()
+    throws Exception {
+        final Configurations configurations = new ResourceConfigurations("test.properties");
+        final Configurations same = new PropertiesConfigurations(IO.resource("test.properties"));
+        final Configurations different = configurations.override(new ConfigurationsBuilder().put("message", "goodbye").build());
+
+        final long fingerprint = configurations.fingerprint();
+        assertNotEquals(fingerprint, 0L);
+        assertEquals(configurations.fingerprint(), fingerprint);
+        assertEquals(same.fingerprint(), fingerprint);
+        assertEquals(configurations.merge(same).fingerprint(), fingerprint);
+        assertNotEquals(different.fingerprint(), fingerprint);
+
+        /* Views don't know theirs, but hash and compare all the same */
+        final Configurations view = configurations.prefix("view").strip("view");
+        assertEquals(view.fingerprint(), 0L);
+        assertEquals(view, configurations);
+        assertEquals(configurations, view);
+        assertEquals(view.hashCode(), configurations.hashCode());
+
+        assertEquals(same.hashCode(), configurations.hashCode());
+        assertEquals(same, configurations);
+        assertNotEquals(different, configurations);
+        assertNotEquals(configurations, different);
+    }
+
+    @Test
+    public void testCollectionViews()
+    throws Exception {
+        final Configurations configurations = new ResourceConfigurations("test.properties");
+        final Configurations view = configurations.strip("explicit");
+
+        for (Configurations instance: new Configurations[] { configurations, view }) {
+            final Set<String> keys = new HashSet<>();
+            final List<String> values = new ArrayList<>();
+            for (Entry<String, String> entry: instance.entrySet()) {
+                keys.add(entry.getKey());
+                values.add(entry.getValue());
+            }
+
+            assertEquals(instance.keySet(), keys);
+            assertEquals(instance.keySet().size(), keys.size());
+            assertEquals(new ArrayList<>(instance.values()), values);
+            assertEquals(instance.values().size(), values.size());
+            for (String value: values) assertTrue(instance.containsValue(value), value);
+            assertFalse(instance.containsValue("not there"));
+            assertFalse(instance.containsValue(null));
+            assertFalse(instance.containsValue(123));
+
+            try {
+                instance.keySet().iterator().remove();
+                fail("Exception not thrown");
+            } catch (UnsupportedOperationException | IllegalStateException exception) {
+                /* Read only */
+            }
+        }
+
+        assertTrue(view.keySet().contains("foo.a"));
+        assertFalse(view.keySet().contains("explicit.foo.a"));
+        assertTrue(view.containsValue("foo.a"));
+    }
 }
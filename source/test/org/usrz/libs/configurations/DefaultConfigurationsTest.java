@@ -29,4 +29,19 @@ public class DefaultConfigurationsTest extends AbstractTest {
     throws IOException, ConfigurationsException {
         assertEquals(new DefaultConfigurations().get("default"), "a nice default");;
     }
+
+    @Test
+    public void testCache()
+    throws IOException, ConfigurationsException {
+        final Configurations first = new DefaultConfigurations(DefaultConfigurationsTest.class);
+        final long hits = DefaultConfigurations.getCacheHits();
+        final long misses = DefaultConfigurations.getCacheMisses();
+
+        final Configurations second = new DefaultConfigurations(DefaultConfigurationsTest.class);
+        assertEquals(second, first);
+        assertEquals(second.get("default"), "a nice default");
+
+        assertEquals(DefaultConfigurations.getCacheHits(), hits + 1);
+        assertEquals(DefaultConfigurations.getCacheMisses(), misses);
+    }
 }
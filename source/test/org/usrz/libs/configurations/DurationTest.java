@@ -74,4 +74,32 @@ public class DurationTest extends AbstractTest {
         assertEquals(configurations.getDuration("test-36"), Duration.parse("PT59S"));
         assertEquals(configurations.getDuration("test-37"), Duration.parse("PT24H"));
     }
+
+    @Test
+    public void testDurationSigns() {
+        final Configurations configurations = new ConfigurationsBuilder()
+                .put("test-1", "PT-6H3M")
+                .put("test-2", "-1 hour +30 minutes")
+                .put("test-3", "-1.5s")
+                .put("test-4", "1 DAY T 2 HOURS")
+                .build();
+
+        assertEquals(configurations.getDuration("test-1"), Duration.parse("PT-6H3M"));
+        assertEquals(configurations.getDuration("test-2"), Duration.parse("PT-30M"));
+        assertEquals(configurations.getDuration("test-3"), Duration.parse("PT-1.5S"));
+        assertEquals(configurations.getDuration("test-4"), Duration.parse("PT26H"));
+    }
+
+    @Test
+    public void testInvalidDurations() {
+        final String[] invalid = { "P", "5", "5 parsecs", "1.5 hours", "3 minutes 2 hours", "1d 1d", "1.0123456789s", "- 5s" };
+        for (String value: invalid) {
+            try {
+                new ConfigurationsBuilder().put("test", value).build().getDuration("test");
+                fail("No exception for \"" + value + "\"");
+            } catch (ConfigurationsException exception) {
+                assertEquals(exception.getMessage(), "Invalid duration \"" + value + "\"");
+            }
+        }
+    }
 }
@@ -15,6 +15,10 @@
  * ========================================================================== */
 package org.usrz.libs.configurations;
 
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import org.testng.annotations.Test;
 import org.usrz.libs.testing.AbstractTest;
 import org.usrz.libs.testing.IO;
@@ -48,6 +52,102 @@ public class JsonConfigurationsTest extends AbstractTest {
         assertEquals(configurations, json);
     }
 
+    @Test
+    public void testJsonBuffersAndChannels()
+    throws Exception {
+        final byte[] bytes = IO.resource("test.json").readAllBytes();
+        final Configurations expected = new JsonConfigurations(IO.resource("test.json"));
+
+        assertEquals(new JsonConfigurations(ByteBuffer.wrap(bytes)), expected);
+        assertEquals(new JsonConfigurations(PropertiesConfigurationsTest.trickle(bytes)), expected);
+
+        /* Multi-byte sequences and surrogate pairs, decoded incrementally */
+        final byte[] unicode = "{ value: 'caf\u00e9 \u20ac \ud83d\ude00' }".getBytes(StandardCharsets.UTF_8);
+        assertEquals(new JsonConfigurations(ByteBuffer.wrap(unicode)).get("value"), "caf\u00e9 \u20ac \ud83d\ude00");
+        assertEquals(new JsonConfigurations(PropertiesConfigurationsTest.trickle(unicode)).get("value"), "caf\u00e9 \u20ac \ud83d\ude00");
+    }
+
+    @Test
+    public void testJsonBufferReuse()
+    throws Exception {
+        final StringBuilder builder = new StringBuilder("{\n");
+        for (int x = 0; x < 500; x ++) builder.append("  key").append(x).append(": 'value number ").append(x).append("',\n");
+        final byte[] large = builder.append("}\n").toString().getBytes(StandardCharsets.UTF_8);
+        final byte[] small = "{ a: 1 }".getBytes(StandardCharsets.UTF_8);
+
+        /* Reused buffers never leak what a previous (longer) document held */
+        final Configurations secret = new JsonConfigurations(PropertiesConfigurationsTest.trickle(large), (key) -> true);
+        assertEquals(new String(secret.getPassword("key499").get()), "value number 499");
+        final char[] chars = JsonParser.pooled();
+        final ByteBuffer bytes = Utf8Reader.pooled();
+        assertNotNull(chars, "Parser buffer not kept");
+        assertNotNull(bytes, "Reader buffer not kept");
+        for (char c: chars) assertEquals(c, '\0', "Parser buffer not wiped");
+        for (byte b: bytes.array()) assertEquals(b, (byte) 0, "Reader buffer not wiped");
+
+        assertEquals(new JsonConfigurations(PropertiesConfigurationsTest.trickle(small)).size(), 1);
+        assertEquals(new JsonConfigurations(ByteBuffer.wrap(small)).size(), 1);
+        assertSame(JsonParser.pooled(), chars);
+        assertSame(Utf8Reader.pooled(), bytes);
+
+        /* Parsing while parsing (here, from the secrets predicate) */
+        final Configurations nested = new JsonConfigurations(PropertiesConfigurationsTest.trickle(large), (key) -> {
+            try {
+                return new JsonConfigurations(PropertiesConfigurationsTest.trickle(small)).containsKey(key);
+            } catch (Exception exception) {
+                throw new AssertionError(exception);
+            }
+        });
+        assertEquals(nested, new JsonConfigurations(ByteBuffer.wrap(large)));
+    }
+
+    @Test
+    public void testJsonSyntax()
+    throws Exception {
+        final Configurations configurations = new ConfigurationsBuilder()
+                        .put("quoted", "a \"quoted\" string")
+                        .put("single", "it's single")
+                        .put("unicode", "caf\u00e9")
+                        .put("numbers.0", "-1")
+                        .put("numbers.1", "2.5e3")
+                        .put("numbers.2", "31")
+                        .put("numbers.3", "-16")
+                        .put("nested.empty.after", "yes")
+                        .build();
+
+        final Configurations json = new JsonConfigurations(new StringReader(
+                        "// a comment\n"
+                      + "{\n"
+                      + "  quoted: \"a \\\"quoted\\\" string\",\n"
+                      + "  'single': 'it\\'s single', /* another comment */\n"
+                      + "  \"unicode\": \"caf\\u00e9\",\n"
+                      + "  numbers: [ -1, 2.5e3, 0x1F, -0x10, ],\n"
+                      + "  nested: { empty: { }, list: [ ], none: null, empty: { after: \"yes\" } },\n"
+                      + "}\n"));
+
+        assertEquals(json, configurations);
+    }
+
+    @Test(expectedExceptions = ConfigurationsException.class,
+          expectedExceptionsMessageRegExp = "^Unexpected character '\\]' at line 2, column 9.*")
+    public void testJsonSyntaxError()
+    throws Exception {
+        new JsonConfigurations(new StringReader("{\n  foo: 1]"));
+    }
+
+    @Test
+    public void testJsonInvalidNumbers()
+    throws Exception {
+        assertEquals(new JsonConfigurations(new StringReader("{ n: 0x1F }")).get("n", 0), 31);
+
+        for (String number: new String[] { "1d", "2f", "3L", "-Infinity", "+NaN", ".", "1e", "0x", "1.2.3", "0x1G" }) try {
+            new JsonConfigurations(new StringReader("{ n: " + number + " }"));
+            fail("Exception not thrown for " + number);
+        } catch (ConfigurationsException exception) {
+            assertTrue(exception.getMessage().startsWith("Invalid number"), exception.getMessage());
+        }
+    }
+
     @Test(expectedExceptions = ConfigurationsException.class,
           expectedExceptionsMessageRegExp = "^Invalid key name \\\"test.a wrong key\\\".*")
     public void testJsonWrongKey()
@@ -59,4 +159,37 @@ public class JsonConfigurationsTest extends AbstractTest {
             throw exception.getCause(); // unwrap cause
         }
     }
+
+    @Test
+    public void testJsonSecrets()
+    throws Exception {
+        final Configurations json = new JsonConfigurations(new StringReader(
+                        "{ db: { user: 'admin', password: 's\\u0065cret', pin: 1234 } }"),
+                        (key) -> key.equals("db.password") || key.equals("db.pin"));
+
+        assertEquals(json.get("db.user"), "admin");
+        assertFalse(json.containsKey("db.password"));
+        assertEquals(json.getPassword("db.password").get(), "secret".toCharArray());
+        assertEquals(json.getPassword("db.pin").get(), "1234".toCharArray());
+
+        /* Through layers, too */
+        final Configurations merged = new ConfigurationsBuilder().put("db.url", "jdbc:foo").build().merge(json);
+        assertEquals(merged.getPassword("db.password").get(), "secret".toCharArray());
+        assertNull(merged.getPassword("db.missing"));
+    }
+
+    @Test(expectedExceptions = ConfigurationsException.class,
+          expectedExceptionsMessageRegExp = "^Invalid number for secret at line 1.*")
+    public void testJsonInvalidSecretNumber()
+    throws Exception {
+        /* Unquoted secrets are validated, but never echoed back */
+        try {
+            new JsonConfigurations(new StringReader("{ pin: oops }"), (key) -> key.equals("pin"));
+            fail("Exception not thrown");
+        } catch (ConfigurationsException exception) {
+            assertFalse(exception.getMessage().contains("oops"), exception.getMessage());
+        }
+
+        new JsonConfigurations(new StringReader("{ pin: 12oops }"), (key) -> key.equals("pin"));
+    }
 }
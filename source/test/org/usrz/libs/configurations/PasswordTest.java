@@ -0,0 +1,54 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import org.testng.annotations.Test;
+import org.usrz.libs.testing.AbstractTest;
+
+public class PasswordTest extends AbstractTest {
+
+    @Test
+    public void testPassword() {
+        final char[] chars = "secret".toCharArray();
+        final Password password = new Password(chars);
+
+        /* The original array is wiped */
+        assertEquals(chars, new char[6]);
+
+        /* Always the same copy */
+        final char[] secret = password.get();
+        assertEquals(secret, "secret".toCharArray());
+        assertSame(password.get(), secret);
+
+        assertEquals(password, new Password("secret".toCharArray()));
+        assertEquals(password.hashCode(), new Password("secret".toCharArray()).hashCode());
+        assertNotEquals(password, new Password("public".toCharArray()));
+
+        /* Closing wipes our copy */
+        assertFalse(password.isDestroyed());
+        password.close();
+        assertTrue(password.isDestroyed());
+        assertEquals(secret, new char[6]);
+        assertNotEquals(password, new Password(new char[6]));
+
+        try {
+            password.get();
+            fail("Exception not thrown");
+        } catch (IllegalStateException exception) {
+            /* Yep, destroyed */
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import org.usrz.libs.testing.AbstractTest;
+import org.usrz.libs.testing.IO;
+
+public class PropertiesConfigurationsTest extends AbstractTest {
+
+    private static final String PROPERTIES = "\ufeff# a comment \\\n"
+                                           + "! another comment\r\n"
+                                           + "   \n"
+                                           + "plain=value\n"
+                                           + "  spaced   :   some value   \r"
+                                           + "colon:value\r\n"
+                                           + "whitespace value\n"
+                                           + "separators = = value\n"
+                                           + "escaped\\-key = escaped\\:value\\tand\\u0020more\n"
+                                           + "continued = first, \\\n"
+                                           + "            second, \\\r\n"
+                                           + "\t\t    third\n"
+                                           + "backslashes = ends with one \\\\\n"
+                                           + "unicode = caf\u00e9 \u20ac \ud83d\ude00\n"
+                                           + "empty =\n"
+                                           + "overridden = first\n"
+                                           + "overridden = second\n"
+                                           + "removed = first\n"
+                                           + "removed =   \n"
+                                           + "last = no newline\\";
+
+    @Test
+    public void testPropertiesSyntax()
+    throws Exception {
+        final byte[] bytes = PROPERTIES.getBytes(StandardCharsets.UTF_8);
+        final Properties properties = new Properties();
+        properties.load(new InputStreamReader(new ByteArrayInputStream(bytes, 3, bytes.length - 3), StandardCharsets.UTF_8));
+        final Configurations expected = new MappedConfigurations(properties) {};
+        final Configurations parsed = new MappedConfigurations(PropertiesParser.parse(ByteBuffer.wrap(bytes)), true) {};
+
+        assertEquals(parsed, expected);
+        assertEquals(new PropertiesConfigurations(new ByteArrayInputStream(bytes)), expected);
+        assertEquals(new PropertiesConfigurations(new StringReader(PROPERTIES)), expected);
+        assertEquals(parsed.get("escaped-key"), "escaped:value\tand more");
+        assertEquals(parsed.get("continued"), "first, second, third");
+        assertEquals(parsed.get("unicode"), "caf\u00e9 \u20ac \ud83d\ude00");
+        assertEquals(parsed.get("overridden"), "second");
+        assertEquals(parsed.get("last"), "no newline");
+        assertFalse(parsed.containsKey("removed"));
+        assertFalse(parsed.containsKey("empty"));
+        assertEquals(parsed.size(), 11);
+    }
+
+    @Test
+    public void testBuffersAndChannels()
+    throws Exception {
+        final byte[] bytes = PROPERTIES.getBytes(StandardCharsets.UTF_8);
+        final Configurations expected = new MappedConfigurations(PropertiesParser.parse(ByteBuffer.wrap(bytes)), true) {};
+
+        /* Buffers are parsed from their position, and left untouched */
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 5);
+        buffer.put("junk\n".getBytes(StandardCharsets.UTF_8)).put(bytes).flip().position(5);
+        assertEquals(new PropertiesConfigurations(buffer), expected);
+        assertEquals(buffer.position(), 5);
+
+        /* Channels are read up to their end, even one byte at a time */
+        assertEquals(new PropertiesConfigurations(Channels.newChannel(new ByteArrayInputStream(bytes))), expected);
+        assertEquals(new PropertiesConfigurations(trickle(bytes)), expected);
+
+        /* Malformed sequences are replaced as an InputStreamReader would */
+        final byte[] malformed = { 'a', '=', (byte) 0xC3, 'x', (byte) 0xE2, (byte) 0x82, ' ', (byte) 0xF0, (byte) 0x9F, (byte) 0x98 };
+        final Configurations replaced = new PropertiesConfigurations(new InputStreamReader(new ByteArrayInputStream(malformed), StandardCharsets.UTF_8));
+        assertEquals(new PropertiesConfigurations(ByteBuffer.wrap(malformed)), replaced);
+        assertEquals(new PropertiesConfigurations(trickle(malformed)), replaced);
+    }
+
+    @Test
+    public void testNonBlockingChannels()
+    throws Exception {
+        final Pipe pipe = Pipe.open();
+        try {
+            pipe.sink().write(ByteBuffer.wrap("key=value\n".getBytes(StandardCharsets.UTF_8)));
+            pipe.source().configureBlocking(false);
+
+            /* Never spin on a channel returning nothing, reject it */
+            try {
+                new PropertiesConfigurations(pipe.source());
+                fail("Exception not thrown");
+            } catch (IllegalBlockingModeException exception) {
+                /* Non-blocking */
+            }
+            try {
+                new JsonConfigurations(pipe.source());
+                fail("Exception not thrown");
+            } catch (IllegalBlockingModeException exception) {
+                /* Non-blocking */
+            }
+
+            /* Blocking is fine, up to the end of the pipe */
+            pipe.source().configureBlocking(true);
+            pipe.sink().close();
+            assertEquals(new PropertiesConfigurations(pipe.source()).get("key"), "value");
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    /* A channel returning a single byte per read */
+    static ReadableByteChannel trickle(byte[] bytes) {
+        final ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(bytes));
+        return new ReadableByteChannel() {
+
+            @Override
+            public int read(ByteBuffer buffer)
+            throws IOException {
+                if (!buffer.hasRemaining()) return 0;
+                final ByteBuffer single = buffer.duplicate();
+                single.limit(single.position() + 1);
+                final int read = channel.read(single);
+                if (read > 0) buffer.position(single.position());
+                return read;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close()
+            throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    @Test
+    public void testMappedFile()
+    throws Exception {
+        final File file = File.createTempFile("mapped-", ".properties");
+        file.deleteOnExit();
+        Files.copy(IO.resource("test.properties"), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(new PropertiesConfigurations(file), new PropertiesConfigurations(IO.resource("test.properties")));
+        assertEquals(new FileConfigurations(file), new ResourceConfigurations("test.properties"));
+    }
+
+    @Test
+    public void testMappedFileTruncated()
+    throws Exception {
+        final File file = File.createTempFile("mapped-", ".properties");
+        file.deleteOnExit();
+
+        /* Map a file spanning a few pages, then truncate it as writers do */
+        final StringBuilder builder = new StringBuilder();
+        for (int x = 0; x < 1000; x ++) builder.append("key").append(x).append(" = value number ").append(x).append('\n');
+        Files.write(file.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            channel.truncate(0);
+
+            PropertiesConfigurations.parse(file, mapped, (key) -> false);
+            fail("Exception not thrown");
+        } catch (ConfigurationsException exception) {
+            assertTrue(exception.getCause() instanceof InternalError, "Not an internal error: " + exception.getCause());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expectedExceptions = ConfigurationsException.class,
+          expectedExceptionsMessageRegExp = "^Malformed \\\\uxxxx encoding at line 2")
+    public void testMalformedEscape()
+    throws Exception {
+        PropertiesParser.parse(ByteBuffer.wrap("good = value\nbad = \\u00zz\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test(expectedExceptions = ConfigurationsException.class,
+          expectedExceptionsMessageRegExp = "^Malformed \\\\uxxxx encoding at line 2")
+    public void testMalformedEscapeReader()
+    throws Exception {
+        new PropertiesConfigurations(new StringReader("good = value\nbad = \\u00zz\n"));
+    }
+
+    @Test(expectedExceptions = ConfigurationsException.class,
+          expectedExceptionsMessageRegExp = "^Malformed \\\\uxxxx encoding at line 2")
+    public void testMalformedEscapeStream()
+    throws Exception {
+        new PropertiesConfigurations(new ByteArrayInputStream("good = value\nbad = \\u00zz\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testSecrets()
+    throws Exception {
+        final byte[] bytes = "db.user = admin\ndb.password = \\u0073ecret \ndb.empty.password =\n".getBytes(StandardCharsets.UTF_8);
+        final Configurations configurations = new PropertiesConfigurations(new ByteArrayInputStream(bytes), (key) -> key.endsWith("password"));
+
+        assertEquals(configurations.get("db.user"), "admin");
+        assertNull(configurations.get("db.password"));
+        assertEquals(configurations.size(), 1);
+
+        assertEquals(configurations.getPassword("db.password").get(), "secret".toCharArray());
+        assertEquals(configurations.strip("db").getPassword("password").get(), "secret".toCharArray());
+        assertNull(configurations.getPassword("db.empty.password"));
+        assertNull(configurations.getPassword("db.missing"));
+
+        try {
+            configurations.getPassword("db.user");
+            fail("Exception not thrown");
+        } catch (UnsupportedOperationException exception) {
+            /* Not a secret */
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+import org.usrz.libs.testing.AbstractTest;
+
+public class ReloadingFileConfigurationsTest extends AbstractTest {
+
+    @Test
+    public void testReload()
+    throws Exception {
+        final File file = File.createTempFile("reload-", ".properties");
+        file.deleteOnExit();
+        write(file, "kept = value\nchanged = old\nremoved = gone\n");
+
+        final LinkedBlockingQueue<ConfigurationsDiff> changes = new LinkedBlockingQueue<>();
+        try (ReloadingFileConfigurations configurations = new ReloadingFileConfigurations(file, Duration.ofMillis(100))) {
+            configurations.addListener((current, diff) -> changes.add(diff));
+
+            assertEquals(configurations.get("changed"), "old");
+            final Configurations snapshot = configurations.snapshot();
+            final Configurations stripped = configurations.strip("changed");
+
+            /* Broken files are ignored */
+            write(file, "a~wrong~key = value\n");
+            Thread.sleep(1000);
+            assertEquals(configurations.get("changed"), "old");
+
+            write(file, "kept = value\nchanged = new\nadded = here\n");
+            final ConfigurationsDiff diff = changes.poll(30, TimeUnit.SECONDS);
+            assertNotNull(diff, "No changes notified");
+            assertEquals(diff.getKeys().size(), 3);
+            assertTrue(diff.getChanged().contains("changed"));
+            assertTrue(diff.getRemoved().contains("removed"));
+            assertTrue(diff.getAdded().contains("added"));
+
+            /* New mappings, old snapshots and views untouched */
+            assertEquals(configurations.get("changed"), "new");
+            assertEquals(configurations.get("added"), "here");
+            assertNull(configurations.get("removed"));
+            assertEquals(snapshot.get("changed"), "old");
+            assertEquals(stripped.get(null), "old");
+        }
+    }
+
+    @Test
+    public void testSecretsOnlyChange()
+    throws Exception {
+        final Map<String, Object> map = new HashMap<>();
+        map.put("db.user", "admin");
+        map.put("db.password", new Password("old".toCharArray()));
+
+        final List<ConfigurationsDiff> changes = new ArrayList<>();
+        try (ReloadableConfigurations configurations = new ReloadableConfigurations(new MappedConfigurations(map) {}) {
+            @Override
+            public void close() {
+                /* Nothing to do */
+            }
+        }) {
+            configurations.addListener((current, diff) -> changes.add(diff));
+            final Configurations snapshot = configurations.snapshot();
+
+            /* The very same mappings, nothing published */
+            assertTrue(configurations.update(snapshot).isEmpty());
+            assertTrue(changes.isEmpty());
+
+            /* Only the secret changed, published and notified */
+            map.put("db.password", new Password("new".toCharArray()));
+            assertTrue(configurations.update(new MappedConfigurations(map) {}).isEmpty());
+            assertEquals(changes.size(), 1);
+            assertTrue(changes.get(0).isEmpty());
+            assertEquals(configurations.getPassword("db.password").get(), "new".toCharArray());
+            assertEquals(snapshot.getPassword("db.password").get(), "old".toCharArray());
+        }
+    }
+
+    private static void write(File file, String contents)
+    throws IOException {
+        try (OutputStream output = new FileOutputStream(file)) {
+            output.write(contents.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
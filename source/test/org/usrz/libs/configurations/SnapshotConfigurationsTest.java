@@ -0,0 +1,102 @@
+/* ========================================================================== *
+ * Copyright 2014 USRZ.com and Pier Paolo Fumagalli                           *
+ * -------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *  http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ * ========================================================================== */
+package org.usrz.libs.configurations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+import org.usrz.libs.testing.AbstractTest;
+
+public class SnapshotConfigurationsTest extends AbstractTest {
+
+    @Test
+    public void testSnapshot()
+    throws Exception {
+        final Configurations configurations = new ResourceConfigurations("test.properties");
+
+        final File file = File.createTempFile("snapshot-", ".bin");
+        file.deleteOnExit();
+        SnapshotConfigurations.write(configurations, file);
+        final Configurations snapshot = new SnapshotConfigurations(file);
+
+        assertEquals(snapshot, configurations);
+        assertEquals(configurations, snapshot);
+        assertEquals(snapshot.size(), configurations.size());
+        assertEquals(snapshot.get("value.string"), "a string");
+        assertEquals(snapshot.get("  value.integer  "), "123");
+        assertNull(snapshot.get("value"));
+        assertNull(snapshot.get("value.stringz"));
+        assertTrue(snapshot.containsKey("message"));
+        assertFalse(snapshot.containsKey("missing"));
+
+        assertEquals(snapshot.strip("explicit"), configurations.strip("explicit"));
+        assertEquals(snapshot.group("group"), configurations.group("group"));
+        assertEquals(snapshot.extract("value"), configurations.extract("value"));
+        assertTrue(snapshot.strip("missing").isEmpty());
+
+        assertNull(snapshot.getPassword("missing"));
+        try {
+            snapshot.getPassword("message");
+            fail("Exception not thrown");
+        } catch (UnsupportedOperationException exception) {
+            /* Not a secret */
+        }
+    }
+
+    @Test
+    public void testSnapshotValues()
+    throws Exception {
+        final Configurations configurations = new ConfigurationsBuilder()
+                                                    .put("unicode", "caf\u00e9 \u20ac \ud83d\ude00")
+                                                    .put("flag.a", true)
+                                                    .put("flag.b", true)
+                                                    .put("flag.c", false)
+                                                    .build();
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SnapshotConfigurations.write(configurations, output);
+        final ByteBuffer buffer = ByteBuffer.allocate(output.size() + 3);
+        buffer.put(new byte[3]).put(output.toByteArray()).position(3);
+
+        final Configurations snapshot = new SnapshotConfigurations(buffer);
+        assertEquals(snapshot, configurations);
+        assertEquals(snapshot.get("unicode"), "caf\u00e9 \u20ac \ud83d\ude00");
+
+        /* Empty configurations */
+        output.reset();
+        SnapshotConfigurations.write(Configurations.EMPTY_CONFIGURATIONS, output);
+        assertEquals(new SnapshotConfigurations(ByteBuffer.wrap(output.toByteArray())), Configurations.EMPTY_CONFIGURATIONS);
+    }
+
+    @Test(expectedExceptions = ConfigurationsException.class,
+          expectedExceptionsMessageRegExp = "^Invalid snapshot \\(wrong magic\\)")
+    public void testInvalidSnapshot()
+    throws Exception {
+        new SnapshotConfigurations(ByteBuffer.wrap("foo = bar\nbaz = 1\n".getBytes("UTF-8")));
+    }
+
+    @Test(expectedExceptions = ConfigurationsException.class,
+          expectedExceptionsMessageRegExp = "^Snapshot corrupted .*")
+    public void testCorruptedSnapshot()
+    throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SnapshotConfigurations.write(new ResourceConfigurations("test.properties"), output);
+        final byte[] bytes = output.toByteArray();
+        new SnapshotConfigurations(ByteBuffer.wrap(bytes, 0, bytes.length - 100)).entrySet().forEach((entry) -> {});
+    }
+}